@@ -0,0 +1,26 @@
+package com.example.demo.bench;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.example.demo.service.MetricsService;
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.OrderMatchingService;
+import com.example.demo.service.TradeWriter;
+
+/** Collaborators for running the matching engine with no database or CloudWatch behind it. */
+final class BenchmarkSupport {
+    private BenchmarkSupport() { }
+
+    static OrderMatchingService newMatcher() {
+        return new OrderMatchingService(new MetricsService(datums -> { }, 60_000), new NoOpTradeWriter());
+    }
+
+    static final class NoOpTradeWriter extends TradeWriter {
+        NoOpTradeWriter() {
+            super(null, null, null, null, null, null, null, new OrderLatency(new SimpleMeterRegistry()), 1, 1, 1, 0, null);
+        }
+
+        @Override
+        public void submit(TradeFill fill) { }
+    }
+}
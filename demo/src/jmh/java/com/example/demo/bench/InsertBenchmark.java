@@ -0,0 +1,153 @@
+package com.example.demo.bench;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insert throughput for {@code transactions}-shaped rows, in rows per
+ * millisecond, the two ways Hibernate can write them. With IDENTITY ids every
+ * insert runs on its own and reads its key back, which is what Hibernate is
+ * forced into; with sequence ids drawn 50 at a time (pooled-lo), ids are known
+ * up front and rows go out as JDBC batches.
+ *
+ * Runs against in-memory H2 by default. To compare on MySQL, pass its URL:
+ *   -Djmh.args="InsertBenchmark -p url=jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true&user=...&password=..."
+ * MySQL has no sequences, so there the block is drawn from a one-row table,
+ * as Hibernate does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InsertBenchmark {
+    private static final int ROWS = 500;
+    private static final int BLOCK = 50;
+
+    @Param({ "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1" })
+    String url;
+
+    private Connection connection;
+    private boolean sequences;
+    private long nextId;
+    private long blockEnd;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(url);
+        sequences = !connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS bench_identity");
+            st.execute("DROP TABLE IF EXISTS bench_sequence");
+            st.execute("CREATE TABLE bench_identity (id BIGINT AUTO_INCREMENT PRIMARY KEY, portfolio_id BIGINT,"
+                + " stock_symbol VARCHAR(255), quantity INT, price DECIMAL(19,2), type VARCHAR(8), timestamp TIMESTAMP)");
+            st.execute("CREATE TABLE bench_sequence (id BIGINT PRIMARY KEY, portfolio_id BIGINT,"
+                + " stock_symbol VARCHAR(255), quantity INT, price DECIMAL(19,2), type VARCHAR(8), timestamp TIMESTAMP)");
+            if (sequences) {
+                st.execute("DROP SEQUENCE IF EXISTS bench_seq");
+                st.execute("CREATE SEQUENCE bench_seq START WITH 1 INCREMENT BY " + BLOCK);
+            } else {
+                st.execute("DROP TABLE IF EXISTS bench_seq");
+                st.execute("CREATE TABLE bench_seq (next_val BIGINT)");
+                st.execute("INSERT INTO bench_seq VALUES (1)");
+            }
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identityRowAtATime() throws SQLException {
+        long last = 0;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO bench_identity (portfolio_id, stock_symbol, quantity, price, type, timestamp) VALUES (?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                bind(ps, 1, i);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    last = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int[] sequenceBatched() throws SQLException {
+        int[] counts;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO bench_sequence (id, portfolio_id, stock_symbol, quantity, price, type, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                ps.setLong(1, nextId());
+                bind(ps, 2, i);
+                ps.addBatch();
+            }
+            counts = ps.executeBatch();
+        }
+        connection.commit();
+        return counts;
+    }
+
+    private long nextId() throws SQLException {
+        if (nextId == blockEnd) {
+            try (Statement st = connection.createStatement()) {
+                if (sequences) {
+                    try (ResultSet rs = st.executeQuery("SELECT NEXT VALUE FOR bench_seq")) {
+                        rs.next();
+                        nextId = rs.getLong(1);
+                    }
+                } else {
+                    try (ResultSet rs = st.executeQuery("SELECT next_val FROM bench_seq FOR UPDATE")) {
+                        rs.next();
+                        nextId = rs.getLong(1);
+                    }
+                    st.executeUpdate("UPDATE bench_seq SET next_val = " + (nextId + BLOCK));
+                }
+            }
+            blockEnd = nextId + BLOCK;
+        }
+        return nextId++;
+    }
+
+    private static void bind(PreparedStatement ps, int first, int i) throws SQLException {
+        ps.setLong(first, 1 + i % 100);
+        ps.setString(first + 1, "SYM" + i % 20);
+        ps.setInt(first + 2, 1 + i % 100);
+        ps.setBigDecimal(first + 3, BigDecimal.valueOf(5_000 + i, 2));
+        ps.setString(first + 4, i % 3 == 0 ? "SELL" : "BUY");
+        ps.setTimestamp(first + 5, Timestamp.from(Instant.now()));
+    }
+}
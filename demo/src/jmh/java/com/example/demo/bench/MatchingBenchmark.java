@@ -0,0 +1,105 @@
+package com.example.demo.bench;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.service.OrderMatchingService;
+import com.example.demo.service.OrderMatchingService.Order;
+
+/**
+ * {@link OrderMatchingService#placeOrder} against books pre-filled with
+ * {@code depth} price levels per side on each of {@code symbols} symbols.
+ *
+ * <ul>
+ *   <li>{@code fillHeavy}: every operation rests one share at the mid and
+ *       takes it straight back out, so half the orders trade at the touch.</li>
+ *   <li>{@code restHeavy}: every operation rests a bid somewhere inside the
+ *       ladder and cancels one placed 1024 operations earlier, so books keep
+ *       their size while levels are inserted behind the touch.</li>
+ * </ul>
+ *
+ * Throughput is ops/us, sample time gives the latency percentiles (p99 among
+ * them), and the default {@code -prof gc} in the jmh profile adds allocation
+ * rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingBenchmark {
+    private static final long MID_CENTS = 10_000;
+    private static final int CANCEL_WINDOW = 1024;
+
+    @Param({ "1", "64" })
+    int symbols;
+
+    @Param({ "10", "1000", "10000" })
+    int depth;
+
+    private OrderMatchingService matcher;
+    private String[] names;
+    private BigDecimal mid;
+    private BigDecimal[] bidPrices;
+    private long[] restingIds;
+    private int next;
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        matcher = BenchmarkSupport.newMatcher();
+        names = new String[symbols];
+        mid = BigDecimal.valueOf(MID_CENTS, 2);
+        bidPrices = new BigDecimal[depth];
+        for (int l = 0; l < depth; l++) bidPrices[l] = BigDecimal.valueOf(MID_CENTS - 1 - l, 2);
+        for (int s = 0; s < symbols; s++) {
+            names[s] = "SYM" + s;
+            for (int l = 1; l <= depth; l++) {
+                matcher.placeOrder(new Order(1L, names[s], Order.Side.SELL, 100, BigDecimal.valueOf(MID_CENTS + l, 2)));
+                matcher.placeOrder(new Order(1L, names[s], Order.Side.BUY, 100, BigDecimal.valueOf(MID_CENTS - l, 2)));
+            }
+        }
+        restingIds = new long[CANCEL_WINDOW];
+    }
+
+    @Benchmark
+    public int fillHeavy() {
+        String symbol = names[next++ % symbols];
+        matcher.placeOrder(new Order(2L, symbol, Order.Side.SELL, 1, mid));
+        Order taker = new Order(3L, symbol, Order.Side.BUY, 1, mid);
+        matcher.placeOrder(taker);
+        return taker.getQuantity();
+    }
+
+    @Benchmark
+    public int restHeavy() {
+        int slot = next & (CANCEL_WINDOW - 1);
+        String symbol = names[next++ % symbols];
+        if (restingIds[slot] != 0) matcher.cancelOrder(restingIds[slot], 4L);
+        Order order = new Order(4L, symbol, Order.Side.BUY, 1, bidPrices[(int) (nextRandom() % depth)]);
+        matcher.placeOrder(order);
+        restingIds[slot] = order.getOrderId();
+        return order.getQuantity();
+    }
+
+    private long nextRandom() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return seed >>> 1;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.bench;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.service.ValueSeriesStore;
+
+/**
+ * Reads from a {@link ValueSeriesStore} holding a year of one-minute value
+ * snapshots for one portfolio: a one-day range scan, which skips every chunk
+ * outside the day, and the whole year downsampled to daily points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeriesBenchmark {
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+    private static final Instant END = START.plus(Duration.ofDays(365));
+
+    @Param({ "16" })
+    int chunkSizeKb;
+
+    private Path dir;
+    private ValueSeriesStore store;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("series-bench");
+        store = new ValueSeriesStore(dir, chunkSizeKb << 10);
+        long cents = 10_000_00;
+        for (int minute = 0; minute < 365 * 24 * 60; minute++) {
+            cents += (minute * 31 % 11) - 5;
+            store.append(1L, START.plus(Duration.ofMinutes(minute)), BigDecimal.valueOf(cents, 2));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<ValueSeriesStore.Point> rangeOneDay() {
+        Instant from = START.plus(Duration.ofDays(200));
+        return store.range(1L, from, from.plus(Duration.ofDays(1)));
+    }
+
+    @Benchmark
+    public List<ValueSeriesStore.Point> downsampleYearToDays() {
+        return store.downsample(1L, START, END, Duration.ofDays(1));
+    }
+}
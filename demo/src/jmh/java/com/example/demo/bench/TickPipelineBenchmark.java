@@ -0,0 +1,137 @@
+package com.example.demo.bench;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import com.example.demo.entity.TradeType;
+import com.example.demo.service.MarkToMarket;
+import com.example.demo.service.MarketDataService;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.PnlEngine;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.PriceBroadcaster;
+import com.example.demo.service.QuoteCache;
+import com.example.demo.service.QuoteDemand;
+import com.example.demo.service.SimulatedMarketData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Simulated ticks, in ticks per millisecond, through the whole price path:
+ * quote cache, mark-to-market for 1,000 portfolios holding 10 symbols each,
+ * and the price broadcaster's fanout to {@code sessions} sessions each
+ * watching 20 of 2,000 symbols in one subscription. Each invocation is one
+ * broadcast interval: {@code BATCH} ticks, then a flush. Frames are counted
+ * where they would be written to the sockets, so no network is involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickPipelineBenchmark {
+    private static final int SYMBOLS = 2_000;
+    private static final int BATCH = 1_000;
+
+    @Param({ "100", "1000" })
+    int sessions;
+
+    private SimulatedMarketData market;
+    private MarketDataService service;
+    private SimpleBrokerMessageHandler broker;
+    private PriceBroadcaster broadcaster;
+    private MarkToMarket markToMarket;
+    private PnlEngine pnlEngine;
+    private final AtomicLong frames = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        market = new SimulatedMarketData(List.of(), SYMBOLS, 10_000, 0.05, 0.3, 0.5, 60, 42);
+        List<String> symbols = market.symbols();
+        Random random = new Random(42);
+
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(message -> frames.incrementAndGet());
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutbound,
+            brokerChannel, List.of("/topic"));
+        broker.start();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        broadcaster = new PriceBroadcaster(clientOutbound, objectMapper, 100);
+        for (int s = 0; s < sessions; s++) {
+            List<String> watched = new ArrayList<>();
+            for (int k = 0; k < 20; k++) watched.add(symbols.get(random.nextInt(SYMBOLS)));
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            headers.setSessionId("session-" + s);
+            headers.setSubscriptionId("sub-0");
+            headers.setDestination("/topic/prices/" + String.join(",", watched));
+            broadcaster.onSubscribe(new SessionSubscribeEvent(this,
+                MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders())));
+        }
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(converter);
+
+        MarketPrices prices = new MarketPrices();
+        PositionLedger ledger = new PositionLedger(portfolioId -> List.of());
+        markToMarket = new MarkToMarket(ledger, prices, template);
+        pnlEngine = new PnlEngine(ledger, prices, template, (portfolioId, sink) -> 0);
+        List<PositionLedger.Fill> fills = new ArrayList<>();
+        for (long portfolio = 1; portfolio <= 1_000; portfolio++) {
+            for (int k = 0; k < 10; k++) {
+                fills.add(new PositionLedger.Fill(portfolio, symbols.get(random.nextInt(SYMBOLS)), TradeType.BUY,
+                    1 + random.nextInt(100), new BigDecimal("100.00")));
+            }
+        }
+        ledger.record(fills, () -> null);
+
+        QuoteCache quoteCache = new QuoteCache(symbol -> null, prices, Runnable::run, System::currentTimeMillis,
+            60_000, 600_000, SYMBOLS);
+        service = new MarketDataService(broadcaster, quoteCache, new QuoteDemand(300_000), market, null,
+            markToMarket, pnlEngine, 60_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long simulatedTicks() {
+        market.generate(BATCH, 6, service::publish);
+        broadcaster.flush();
+        markToMarket.publishChanged();
+        pnlEngine.publishChanged();
+        return frames.get();
+    }
+}
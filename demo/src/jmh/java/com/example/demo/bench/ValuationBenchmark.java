@@ -0,0 +1,92 @@
+package com.example.demo.bench;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.example.demo.entity.TradeType;
+import com.example.demo.service.MarkToMarket;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.PositionLedger;
+
+/**
+ * Portfolio valuation as the app runs it, for a portfolio built from
+ * {@code transactions} fills over 20 symbols: the {@link PositionLedger}'s
+ * last-trade and market valuations, {@link MarkToMarket}'s maintained value,
+ * a price tick revaluing the holder, and recording one more fill. None of
+ * these should grow with the length of the history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValuationBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    int transactions;
+
+    private PositionLedger ledger;
+    private MarketPrices prices;
+    private MarkToMarket markToMarket;
+    private List<PositionLedger.Fill> fill;
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        ledger = new PositionLedger(portfolioId -> List.of());
+        prices = new MarketPrices();
+        markToMarket = new MarkToMarket(ledger, prices, new SimpMessagingTemplate((message, timeout) -> true));
+        List<PositionLedger.Fill> fills = new ArrayList<>(transactions);
+        for (int i = 0; i < transactions; i++) {
+            fills.add(new PositionLedger.Fill(1L, "SYM" + random.nextInt(20),
+                random.nextInt(3) == 0 ? TradeType.SELL : TradeType.BUY, 1 + random.nextInt(100),
+                BigDecimal.valueOf(5_000 + random.nextInt(20_000), 2)));
+        }
+        ledger.record(fills, () -> null);
+        fill = List.of(new PositionLedger.Fill(1L, "SYM0", TradeType.BUY, 1, new BigDecimal("100.00")));
+    }
+
+    @Benchmark
+    public BigDecimal ledgerValue() {
+        return ledger.lastTradeValue(1L);
+    }
+
+    @Benchmark
+    public BigDecimal ledgerMarketValue() {
+        return ledger.value(1L, prices::price);
+    }
+
+    @Benchmark
+    public BigDecimal markToMarketValue() {
+        return markToMarket.value(1L);
+    }
+
+    @Benchmark
+    public int markToMarketTick() {
+        return markToMarket.onTick("SYM0", BigDecimal.valueOf(10_000 + (tick++ & 1), 2));
+    }
+
+    @Benchmark
+    public Object ledgerFill() {
+        return ledger.record(fill, () -> fill);
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.demo;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
@@ -20,8 +24,12 @@ public class DemoApplication {
 	}
 
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(@Value("${market.api.timeout-ms:5000}") long timeoutMs) {
+		// Bounded, so a hung quote call can't hold a fetch thread indefinitely
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(Duration.ofMillis(timeoutMs));
+		requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+		return new RestTemplate(requestFactory);
 	}
 
 	@Bean
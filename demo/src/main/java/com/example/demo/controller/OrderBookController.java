@@ -0,0 +1,35 @@
+package com.example.demo.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.dto.OrderBookDepth;
+import com.example.demo.service.OrderMatchingService;
+
+@RestController
+@RequestMapping("/api/orderbook")
+@Component
+public class OrderBookController {
+    private static final int MAX_LEVELS = 100;
+
+    private final OrderMatchingService matchingService;
+
+    public OrderBookController(OrderMatchingService matchingService) {
+        this.matchingService = matchingService;
+    }
+
+    /** Top {@code levels} bid and ask levels for a symbol, best first. Live updates are on /topic/depth/{symbol}. */
+    @GetMapping("/{symbol}")
+    public ResponseEntity<OrderBookDepth> getDepth(@PathVariable String symbol,
+                                                   @RequestParam(defaultValue = "10") int levels) {
+        if (levels <= 0 || levels > MAX_LEVELS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(matchingService.depth(symbol, levels));
+    }
+}
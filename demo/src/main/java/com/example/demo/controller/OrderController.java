@@ -2,12 +2,19 @@ package com.example.demo.controller;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.List;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.entity.Portfolio;
@@ -19,28 +26,123 @@ import com.example.demo.repository.PortfolioRepository;
 import com.example.demo.repository.PortfolioValueHistoryRepository;
 import com.example.demo.repository.StockRepository;
 import com.example.demo.repository.TransactionRepository;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.OrderJournal;
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.OrderPipeline;
+import com.example.demo.service.PortfolioValueRollups;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.Ticks;
+import com.example.demo.service.Upserts;
+import com.example.demo.service.ValueSeriesStore;
 
 @RestController
 @RequestMapping("/api/orders")
 @Component
 public class OrderController {
     private final TransactionRepository transactionRepository;
+    private final Upserts upserts;
     private final PortfolioRepository portfolioRepository;
     private final StockRepository stockRepository;
     private final PortfolioValueHistoryRepository valueHistoryRepository;
+    private final OrderPipeline orderPipeline;
+    private final OrderLatency orderLatency;
+    private final PositionLedger positionLedger;
+    private final MarketPrices marketPrices;
+    private final PortfolioValueRollups valueRollups;
+    private final ValueSeriesStore valueSeries;
+    private final TransactionTemplate transactionTemplate;
 
     public OrderController(TransactionRepository transactionRepository,
+                         Upserts upserts,
                          PortfolioRepository portfolioRepository,
                          StockRepository stockRepository,
-                         PortfolioValueHistoryRepository valueHistoryRepository) {
+                         PortfolioValueHistoryRepository valueHistoryRepository,
+                         OrderPipeline orderPipeline,
+                         OrderLatency orderLatency,
+                         PositionLedger positionLedger,
+                         MarketPrices marketPrices,
+                         PortfolioValueRollups valueRollups,
+                         ValueSeriesStore valueSeries,
+                         PlatformTransactionManager transactionManager) {
         this.transactionRepository = transactionRepository;
+        this.upserts = upserts;
         this.portfolioRepository = portfolioRepository;
         this.stockRepository = stockRepository;
         this.valueHistoryRepository = valueHistoryRepository;
+        this.orderPipeline = orderPipeline;
+        this.orderLatency = orderLatency;
+        this.positionLedger = positionLedger;
+        this.marketPrices = marketPrices;
+        this.valueRollups = valueRollups;
+        this.valueSeries = valueSeries;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Submits a limit order to the matching engine. The request thread only
+     * claims a slot in the order pipeline; fills and the final state arrive on
+     * /topic/orders/{portfolioId}.
+     */
+    @PostMapping("/limit")
+    public ResponseEntity<OrderAck> placeLimitOrder(@RequestBody OrderRequest request) {
+        long received = System.nanoTime();
+        try {
+            return submitLimitOrder(request);
+        } finally {
+            orderLatency.recordSince(OrderLatency.Stage.HTTP, received);
+        }
+    }
+
+    private ResponseEntity<OrderAck> submitLimitOrder(OrderRequest request) {
+        if (request.getPortfolioId() == null || request.getSymbol() == null
+                || !OrderJournal.symbolFits(request.getSymbol())
+                || request.getQuantity() <= 0 || request.getPrice() <= 0
+                || !("BUY".equals(request.getSide()) || "SELL".equals(request.getSide()))) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Only listed stocks reach the pipeline, whose symbol table never shrinks
+        if (!stockRepository.existsById(request.getSymbol())) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Fills for a portfolio that does not exist could never be written
+        if (!portfolioRepository.existsById(request.getPortfolioId())) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean buy = request.getSide().equals("BUY");
+        long orderId = orderPipeline.submit(request.getPortfolioId(), request.getSymbol(), buy,
+            Ticks.toTicks(BigDecimal.valueOf(request.getPrice()), buy), request.getQuantity());
+        return ResponseEntity.accepted().body(new OrderAck(orderId));
+    }
+
+    /** Cancels a resting limit order. The outcome is published on /topic/orders/{portfolioId}. */
+    @DeleteMapping("/{orderId}")
+    public ResponseEntity<OrderAck> cancelOrder(@PathVariable long orderId, @RequestParam Long portfolioId) {
+        orderPipeline.cancel(orderId, portfolioId);
+        return ResponseEntity.accepted().body(new OrderAck(orderId));
+    }
+
+    /** Reduces the open quantity of a resting limit order, keeping its queue position. */
+    @PatchMapping("/{orderId}")
+    public ResponseEntity<OrderAck> amendOrder(@PathVariable long orderId, @RequestBody AmendRequest request) {
+        if (request.getPortfolioId() == null || request.getQuantity() <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        orderPipeline.amend(orderId, request.getPortfolioId(), request.getQuantity());
+        return ResponseEntity.accepted().body(new OrderAck(orderId));
     }
 
     @PostMapping
     public ResponseEntity<Transaction> placeOrder(@RequestBody OrderRequest request) {
+        long received = System.nanoTime();
+        try {
+            return fillInstantly(request);
+        } finally {
+            orderLatency.recordSince(OrderLatency.Stage.HTTP_INSTANT_FILL, received);
+        }
+    }
+
+    private ResponseEntity<Transaction> fillInstantly(OrderRequest request) {
         try {
             System.out.println("Received order request: " + request);
             
@@ -66,7 +168,13 @@ public class OrderController {
             transaction.setType(request.getSide().equals("BUY") ? TradeType.BUY : TradeType.SELL);
 
             System.out.println("Saving transaction...");
-            Transaction savedTransaction = transactionRepository.save(transaction);
+            PositionLedger.Fill fill = new PositionLedger.Fill(portfolio.getId(), transaction.getStockSymbol(),
+                transaction.getType(), transaction.getQuantity(), transaction.getPrice());
+            Transaction savedTransaction = positionLedger.record(List.of(fill), () -> transactionTemplate.execute(status -> {
+                Transaction saved = transactionRepository.save(transaction);
+                upserts.applyFills(List.of(fill));
+                return saved;
+            }));
             System.out.println("Transaction saved with ID: " + savedTransaction.getId());
             
             try {
@@ -80,8 +188,14 @@ public class OrderController {
                 System.out.println("Portfolio value history created: " + snapshot);
                 
                 System.out.println("Saving portfolio value history...");
-                PortfolioValueHistory savedHistory = valueHistoryRepository.save(snapshot);
+                PortfolioValueHistory savedHistory = transactionTemplate.execute(status -> {
+                    PortfolioValueHistory saved = valueHistoryRepository.save(snapshot);
+                    valueRollups.record(List.of(
+                        new PortfolioValueRollups.Snapshot(portfolio.getId(), saved.getTimestamp(), saved.getValue())));
+                    return saved;
+                });
                 System.out.println("Portfolio value history saved with ID: " + savedHistory.getId());
+                valueSeries.append(portfolio.getId(), savedHistory.getTimestamp(), savedHistory.getValue());
             } catch (Exception e) {
                 System.err.println("Error saving portfolio value history: " + e.getMessage());
                 e.printStackTrace();
@@ -98,55 +212,11 @@ public class OrderController {
     }
 
     private BigDecimal calculatePortfolioValue(Long portfolioId) {
-        var txns = transactionRepository.findByPortfolioId(portfolioId);
-        java.util.Map<String, Integer> holdings = new java.util.HashMap<>();
-        
-        // Track current holdings for each stock
-        for (var txn : txns) {
-            String symbol = txn.getStockSymbol();
-            int quantity = txn.getQuantity();
-            
-            if (txn.getType() == TradeType.BUY) {
-                // Add to holdings
-                holdings.put(symbol, holdings.getOrDefault(symbol, 0) + quantity);
-            } else if (txn.getType() == TradeType.SELL) {
-                // Subtract from holdings
-                holdings.put(symbol, holdings.getOrDefault(symbol, 0) - quantity);
-            }
-        }
-        
-        // Calculate current value using real-time prices
-        BigDecimal totalValue = BigDecimal.ZERO;
-        for (var entry : holdings.entrySet()) {
-            String symbol = entry.getKey();
-            int quantity = entry.getValue();
-            
-            if (quantity > 0) {
-                // Use current market price (for now, use transaction price as fallback)
-                BigDecimal currentPrice = getCurrentStockPrice(symbol);
-                BigDecimal positionValue = currentPrice.multiply(BigDecimal.valueOf(quantity));
-                totalValue = totalValue.add(positionValue);
-                System.out.println("Position: " + symbol + " x" + quantity + " @ $" + currentPrice + " = $" + positionValue);
-            }
-        }
-        
+        BigDecimal totalValue = positionLedger.value(portfolioId, marketPrices::price);
         System.out.println("Total portfolio value: $" + totalValue);
         return totalValue;
     }
     
-    private BigDecimal getCurrentStockPrice(String symbol) {
-        // For now, use a simple price lookup
-        // In a real implementation, this would fetch from market data service
-        switch (symbol.toUpperCase()) {
-            case "AAPL": return new BigDecimal("213.88");
-            case "GOOG": return new BigDecimal("194.08");
-            case "MSFT": return new BigDecimal("415.22");
-            case "TSLA": return new BigDecimal("248.50");
-            case "AMZN": return new BigDecimal("178.12");
-            default: return new BigDecimal("100.00");
-        }
-    }
-
     public static class OrderRequest {
         private Long portfolioId;
         private String symbol;
@@ -175,4 +245,23 @@ public class OrderController {
             return "OrderRequest{portfolioId=" + portfolioId + ", symbol='" + symbol + "', quantity=" + quantity + ", side='" + side + "', price=" + price + "}";
         }
     }
-} 
\ No newline at end of file
+
+    public static class AmendRequest {
+        private Long portfolioId;
+        private int quantity;
+
+        public Long getPortfolioId() { return portfolioId; }
+        public void setPortfolioId(Long portfolioId) { this.portfolioId = portfolioId; }
+
+        public int getQuantity() { return quantity; }
+        public void setQuantity(int quantity) { this.quantity = quantity; }
+    }
+
+    public static class OrderAck {
+        private final long orderId;
+
+        public OrderAck(long orderId) { this.orderId = orderId; }
+
+        public long getOrderId() { return orderId; }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.dto.PnlReport;
+import com.example.demo.repository.PortfolioRepository;
+import com.example.demo.service.PnlEngine;
+
+@RestController
+@RequestMapping("/api/portfolios/{portfolioId}/pnl")
+@Component
+public class PnlController {
+    private static final Logger logger = LoggerFactory.getLogger(PnlController.class);
+
+    private final PortfolioRepository portfolioRepo;
+    private final PnlEngine pnlEngine;
+
+    public PnlController(PortfolioRepository portfolioRepo, PnlEngine pnlEngine) {
+        this.portfolioRepo = portfolioRepo;
+        this.pnlEngine = pnlEngine;
+    }
+
+    /**
+     * Realized and unrealized P&L on FIFO lots at the latest prices. Live
+     * updates are published on /topic/portfolio/{id}/pnl once this has been
+     * fetched.
+     */
+    @GetMapping
+    public ResponseEntity<PnlReport> getPnl(@PathVariable Long portfolioId) {
+        logger.debug("Fetching P&L for portfolio ID: {}", portfolioId);
+        if (!portfolioRepo.existsById(portfolioId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(pnlEngine.report(portfolioId));
+    }
+}
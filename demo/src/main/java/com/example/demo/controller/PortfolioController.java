@@ -1,16 +1,31 @@
 package com.example.demo.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import com.example.demo.dto.TransactionPage;
+import com.example.demo.dto.TransactionRow;
 import com.example.demo.entity.Portfolio;
 import com.example.demo.entity.Transaction;
 import com.example.demo.repository.PortfolioRepository;
@@ -20,12 +35,23 @@ import com.example.demo.repository.TransactionRepository;
 @RequestMapping("/api/portfolios")
 @Component
 public class PortfolioController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 1000;
+    /** Rows written between flushes of a streamed history. */
+    private static final int STREAM_FLUSH_ROWS = 500;
+
     private final PortfolioRepository portfolioRepo;
     private final TransactionRepository txnRepo;
+    private final ObjectWriter rowWriter;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public PortfolioController(PortfolioRepository portfolioRepo, TransactionRepository txnRepo) {
+    public PortfolioController(PortfolioRepository portfolioRepo, TransactionRepository txnRepo,
+                               ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
         this.portfolioRepo = portfolioRepo;
         this.txnRepo = txnRepo;
+        this.rowWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     @PostMapping
@@ -67,4 +93,61 @@ public class PortfolioController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Keyset-paged history, newest first: the first {@code limit} rows, or
+     * the {@code limit} rows after {@code cursor} from a previous page. Each
+     * page is one index range scan, however deep into the history it is.
+     */
+    @GetMapping(value = "/{id}/transactions", params = "limit")
+    public ResponseEntity<TransactionPage> getTransactionPage(@PathVariable Long id,
+                                                              @RequestParam int limit,
+                                                              @RequestParam(required = false) String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!portfolioRepo.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        List<TransactionRow> rows;
+        if (cursor == null) {
+            rows = txnRepo.findPage(id, Limit.of(limit));
+        } else {
+            TransactionPage.Cursor after;
+            try {
+                after = TransactionPage.Cursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            rows = txnRepo.findPageBefore(id, after.timestamp(), after.id(), Limit.of(limit));
+        }
+        return ResponseEntity.ok(TransactionPage.of(rows, limit));
+    }
+
+    /**
+     * The whole history as newline-delimited JSON, newest first, written row
+     * by row from a database cursor, so memory use does not grow with the
+     * length of the history. A route of its own, so a plain GET of
+     * /transactions still gets the JSON array the dashboard reads.
+     */
+    @GetMapping(value = "/{id}/transactions/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTransactions(@PathVariable Long id) {
+        if (!portfolioRepo.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = out -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<TransactionRow> rows = txnRepo.streamByPortfolioId(id)) {
+                int written = 0;
+                for (TransactionRow row : (Iterable<TransactionRow>) rows::iterator) {
+                    rowWriter.writeValue(out, row);
+                    out.write('\n');
+                    if (++written % STREAM_FLUSH_ROWS == 0) out.flush();
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
 }
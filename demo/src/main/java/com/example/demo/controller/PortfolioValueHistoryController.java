@@ -1,252 +1,118 @@
 package com.example.demo.controller;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 
-import com.example.demo.entity.PortfolioValueHistory;
-import com.example.demo.entity.Transaction;
+import com.example.demo.dto.ValueBucket;
+import com.example.demo.entity.PortfolioValueRollup;
+import com.example.demo.entity.RollupResolution;
 import com.example.demo.repository.PortfolioRepository;
-import com.example.demo.repository.PortfolioValueHistoryRepository;
-import com.example.demo.repository.StockRepository;
-import com.example.demo.repository.TransactionRepository;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.PortfolioValueRollups;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.ValueSeriesStore;
 
 @RestController
 @RequestMapping("/api/portfolios/{portfolioId}/value-history")
 @Component
 public class PortfolioValueHistoryController {
-    private final PortfolioValueHistoryRepository historyRepo;
+    private static final Logger logger = LoggerFactory.getLogger(PortfolioValueHistoryController.class);
+    /** Upper bound on buckets when the caller leaves the resolution to us. */
+    private static final int MAX_AUTO_BUCKETS = 500;
+
     private final PortfolioRepository portfolioRepo;
-    private final TransactionRepository txnRepo;
-    private final StockRepository stockRepository;
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final String alphaVantageApiKey;
-    private final ConcurrentHashMap<String, CachedPrice> priceCache = new ConcurrentHashMap<>();
+    private final PortfolioValueRollups rollups;
+    private final PositionLedger positionLedger;
+    private final MarketPrices marketPrices;
+    private final ValueSeriesStore valueSeries;
 
-    public PortfolioValueHistoryController(PortfolioValueHistoryRepository historyRepo, 
-                                        PortfolioRepository portfolioRepo,
-                                        TransactionRepository txnRepo,
-                                        StockRepository stockRepository,
-                                        @Value("${market.api.key:demo}") String alphaVantageApiKey) {
-        this.historyRepo = historyRepo;
+    public PortfolioValueHistoryController(PortfolioRepository portfolioRepo,
+                                        PortfolioValueRollups rollups,
+                                        PositionLedger positionLedger,
+                                        MarketPrices marketPrices,
+                                        ValueSeriesStore valueSeries) {
         this.portfolioRepo = portfolioRepo;
-        this.txnRepo = txnRepo;
-        this.stockRepository = stockRepository;
-        this.alphaVantageApiKey = alphaVantageApiKey;
+        this.rollups = rollups;
+        this.positionLedger = positionLedger;
+        this.marketPrices = marketPrices;
+        this.valueSeries = valueSeries;
     }
 
+    /**
+     * OHLC buckets of the portfolio's recorded value over [from, to), oldest
+     * first. Defaults to the last day; without a resolution, picks the finest
+     * one that stays within {@value #MAX_AUTO_BUCKETS} buckets. When {@code to}
+     * is left open, the portfolio's live value is appended as the last point.
+     */
     @GetMapping
-    public List<PortfolioValueHistory> getHistory(@PathVariable Long portfolioId) {
-        System.out.println("Fetching portfolio value history for portfolio ID: " + portfolioId);
-        
-        // Calculate current portfolio value
-        BigDecimal currentValue = calculatePortfolioValue(portfolioId);
-        System.out.println("Current portfolio value: $" + currentValue);
-        
-        // Always return chart data based on current calculated value
-        return createRealisticChartData(currentValue);
-    }
-    
-    private BigDecimal calculatePortfolioValue(Long portfolioId) {
-        try {
-            System.out.println("Calculating portfolio value for portfolio ID: " + portfolioId);
-            List<Transaction> transactions = txnRepo.findByPortfolioId(portfolioId);
-            System.out.println("Found " + transactions.size() + " transactions");
-            
-            BigDecimal totalValue = BigDecimal.ZERO;
-            
-            // Track current holdings for each stock
-            Map<String, Integer> holdings = new HashMap<>();
-            
-            for (Transaction txn : transactions) {
-                String symbol = txn.getStockSymbol();
-                int quantity = txn.getQuantity();
-                String type = txn.getType().name();
-                
-                System.out.println("Processing transaction: " + type + " " + quantity + " " + symbol);
-                
-                if (type.equals("BUY")) {
-                    // Add to holdings
-                    int currentHolding = holdings.getOrDefault(symbol, 0);
-                    holdings.put(symbol, currentHolding + quantity);
-                    System.out.println("Added " + quantity + " " + symbol + ", total holding: " + (currentHolding + quantity));
-                } else if (type.equals("SELL")) {
-                    // Subtract from holdings
-                    int currentHolding = holdings.getOrDefault(symbol, 0);
-                    holdings.put(symbol, currentHolding - quantity);
-                    System.out.println("Sold " + quantity + " " + symbol + ", total holding: " + (currentHolding - quantity));
-                }
-            }
-            
-            System.out.println("Final holdings: " + holdings);
-            
-            // Calculate current value of all holdings
-            for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
-                String symbol = entry.getKey();
-                int quantity = entry.getValue();
-                
-                if (quantity > 0) {
-                    // Get current stock price
-                    Double currentPrice = getCachedOrFetchPrice(symbol);
-                    BigDecimal positionValue = new BigDecimal(currentPrice).multiply(new BigDecimal(quantity));
-                    totalValue = totalValue.add(positionValue);
-                    System.out.println("Position: " + symbol + " x" + quantity + " @ $" + currentPrice + " = $" + positionValue);
-                }
-            }
-            
-            System.out.println("Total portfolio value: $" + totalValue);
-            return totalValue;
-        } catch (Exception e) {
-            System.err.println("Error calculating portfolio value: " + e.getMessage());
-            e.printStackTrace();
-            return BigDecimal.ZERO;
-        }
-    }
-    
-    private List<PortfolioValueHistory> createRealisticChartData(BigDecimal currentValue) {
-        List<PortfolioValueHistory> chartData = new ArrayList<>();
-        Instant now = Instant.now();
-        
-        // If portfolio has no value, show flat line at $0
-        if (currentValue.compareTo(BigDecimal.ZERO) == 0) {
-            for (int i = 5; i >= 0; i--) {
-                PortfolioValueHistory entry = new PortfolioValueHistory();
-                entry.setTimestamp(now.minusSeconds(i * 60));
-                entry.setValue(BigDecimal.ZERO);
-                chartData.add(entry);
-            }
-        } else {
-            // If portfolio has value, show realistic growth pattern
-            // Start from 0 and gradually increase to current value
-            BigDecimal startValue = BigDecimal.ZERO;
-            BigDecimal increment = currentValue.divide(new BigDecimal("6"), 2, BigDecimal.ROUND_HALF_UP);
-            
-            for (int i = 5; i >= 0; i--) {
-                PortfolioValueHistory entry = new PortfolioValueHistory();
-                entry.setTimestamp(now.minusSeconds(i * 60));
-                entry.setValue(startValue.add(increment.multiply(new BigDecimal(6 - i))));
-                chartData.add(entry);
-            }
+    public ResponseEntity<List<ValueBucket>> getHistory(
+            @PathVariable Long portfolioId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) RollupResolution resolution) {
+        logger.debug("Fetching portfolio value history for portfolio ID: {}", portfolioId);
+        if (!portfolioRepo.existsById(portfolioId)) {
+            return ResponseEntity.notFound().build();
         }
-        
-        return chartData;
-    }
-    
-    private List<PortfolioValueHistory> createMockHistory(Long portfolioId) {
-        List<PortfolioValueHistory> mockHistory = new ArrayList<>();
+
         Instant now = Instant.now();
-        
-        // Create mock portfolio value history data
-        mockHistory.add(new PortfolioValueHistory(null, now.minusSeconds(300), new BigDecimal("500.00")));
-        mockHistory.add(new PortfolioValueHistory(null, now.minusSeconds(240), new BigDecimal("520.00")));
-        mockHistory.add(new PortfolioValueHistory(null, now.minusSeconds(180), new BigDecimal("510.00")));
-        mockHistory.add(new PortfolioValueHistory(null, now.minusSeconds(120), new BigDecimal("530.00")));
-        mockHistory.add(new PortfolioValueHistory(null, now.minusSeconds(60), new BigDecimal("525.00")));
-        mockHistory.add(new PortfolioValueHistory(null, now, new BigDecimal("602.04")));
-        
-        return mockHistory;
-    }
-    
-    private Double getCachedOrFetchPrice(String symbol) {
-        // Check cache first
-        CachedPrice cached = priceCache.get(symbol);
-        if (cached != null && !cached.isExpired()) {
-            System.out.println("Using cached price for " + symbol + ": " + cached.price);
-            return cached.price;
-        }
-        
-        // Fetch from API
-        Double realTimePrice = fetchRealTimePrice(symbol);
-        if (realTimePrice != null) {
-            // Cache the result for 5 minutes
-            priceCache.put(symbol, new CachedPrice(realTimePrice, System.currentTimeMillis() + 300000));
-            return realTimePrice;
-        } else {
-            // Use mock price if API fails
-            Double mockPrice = getMockPrice(symbol);
-            System.out.println("Using mock price for " + symbol + ": " + mockPrice);
-            return mockPrice;
+        Instant end = to != null ? to : now;
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().build();
         }
-    }
+        RollupResolution step = resolution != null ? resolution
+            : RollupResolution.forSpan(Duration.between(start, end), MAX_AUTO_BUCKETS);
 
-    private Double fetchRealTimePrice(String symbol) {
-        try {
-            // Add delay to avoid rate limiting
-            Thread.sleep(200);
-            
-            String url = "https://www.alphavantage.co/query?function=GLOBAL_QUOTE&symbol=" + symbol + "&apikey=" + alphaVantageApiKey;
-            System.out.println("Fetching price from: " + url);
-            
-            Map response = restTemplate.getForObject(url, Map.class);
-            System.out.println("API Response for " + symbol + ": " + response);
-            
-            if (response == null) {
-                System.out.println("Null response from Alpha Vantage API");
-                return null;
-            }
-            
-            // Check for API error messages
-            if (response.containsKey("Error Message")) {
-                System.out.println("Alpha Vantage API Error: " + response.get("Error Message"));
-                return null;
-            }
-            
-            if (response.containsKey("Note")) {
-                System.out.println("Alpha Vantage API Note: " + response.get("Note"));
-                return null;
-            }
-            
-            Map quote = (Map) response.get("Global Quote");
-            if (quote != null && quote.get("05. price") != null) {
-                Double price = Double.parseDouble(quote.get("05. price").toString());
-                System.out.println("Successfully fetched price for " + symbol + ": " + price);
-                return price;
-            } else {
-                System.out.println("No price data found for " + symbol + " in response");
-                return null;
-            }
-        } catch (Exception e) {
-            System.out.println("Error fetching price for " + symbol + ": " + e.getMessage());
-            e.printStackTrace();
+        List<ValueBucket> buckets = new ArrayList<>();
+        for (PortfolioValueRollup rollup : rollups.range(portfolioId, step, start, end)) {
+            buckets.add(ValueBucket.of(rollup));
         }
-        return null;
-    }
+        logger.debug("Found {} {} buckets", buckets.size(), step);
 
-    private Double getMockPrice(String symbol) {
-        // Provide realistic mock prices for demo
-        switch (symbol.toUpperCase()) {
-            case "AAPL": return 213.88;
-            case "GOOG": return 194.08;
-            case "MSFT": return 415.22;
-            case "TSLA": return 248.50;
-            case "AMZN": return 178.12;
-            default: return 100.0;
+        if (to == null) {
+            BigDecimal currentValue = positionLedger.value(portfolioId, marketPrices::price);
+            logger.debug("Current portfolio value: ${}", currentValue);
+            buckets.add(ValueBucket.live(now, currentValue));
         }
+        return ResponseEntity.ok(buckets);
     }
-    
-    private static class CachedPrice {
-        final Double price;
-        final long expiryTime;
-        
-        CachedPrice(Double price, long expiryTime) {
-            this.price = price;
-            this.expiryTime = expiryTime;
+
+    /**
+     * Raw value snapshots over [from, to) from the compressed series store,
+     * defaulting to the last day. With {@code step} (an ISO-8601 duration such
+     * as PT5M), returns the latest value in each step-wide bucket instead.
+     */
+    @GetMapping("/points")
+    public ResponseEntity<List<ValueSeriesStore.Point>> getPoints(
+            @PathVariable Long portfolioId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) Duration step) {
+        if (!portfolioRepo.existsById(portfolioId)) {
+            return ResponseEntity.notFound().build();
         }
-        
-        boolean isExpired() {
-            return System.currentTimeMillis() > expiryTime;
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        if (!start.isBefore(end) || (step != null && step.toMillis() <= 0)) {
+            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(step == null
+            ? valueSeries.range(portfolioId, start, end)
+            : valueSeries.downsample(portfolioId, start, end, step));
     }
-} 
\ No newline at end of file
+}
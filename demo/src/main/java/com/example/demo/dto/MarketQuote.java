@@ -12,5 +12,8 @@ public class MarketQuote {
         this.price = price;
         this.timestamp = timestamp;
     }
-    // getters and setters
+
+    public String getSymbol() { return symbol; }
+    public double getPrice() { return price; }
+    public Instant getTimestamp() { return timestamp; }
 }
\ No newline at end of file
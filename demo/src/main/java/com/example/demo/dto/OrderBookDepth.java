@@ -0,0 +1,44 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Aggregated view of one symbol's book: the top price levels on each side,
+ * best first. {@code version} increases with every change to the book, so
+ * clients can drop frames older than one they already have.
+ */
+public class OrderBookDepth {
+    private final String symbol;
+    private final long version;
+    private final List<Level> bids;
+    private final List<Level> asks;
+
+    public OrderBookDepth(String symbol, long version, List<Level> bids, List<Level> asks) {
+        this.symbol = symbol;
+        this.version = version;
+        this.bids = bids;
+        this.asks = asks;
+    }
+
+    public String getSymbol() { return symbol; }
+    public long getVersion() { return version; }
+    public List<Level> getBids() { return bids; }
+    public List<Level> getAsks() { return asks; }
+
+    public static class Level {
+        private final BigDecimal price;
+        private final long quantity;
+        private final int orders;
+
+        public Level(BigDecimal price, long quantity, int orders) {
+            this.price = price;
+            this.quantity = quantity;
+            this.orders = orders;
+        }
+
+        public BigDecimal getPrice() { return price; }
+        public long getQuantity() { return quantity; }
+        public int getOrders() { return orders; }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.dto;
+
+public class OrderUpdate {
+    private final long orderId;
+    private final String status;
+    private final String symbol;
+    private final String side;
+    private final int quantity;
+    private final int filledQuantity;
+    private final int remainingQuantity;
+
+    public OrderUpdate(long orderId, String status, String symbol, String side, int quantity,
+                       int filledQuantity, int remainingQuantity) {
+        this.orderId = orderId;
+        this.status = status;
+        this.symbol = symbol;
+        this.side = side;
+        this.quantity = quantity;
+        this.filledQuantity = filledQuantity;
+        this.remainingQuantity = remainingQuantity;
+    }
+
+    public long getOrderId() { return orderId; }
+    public String getStatus() { return status; }
+    public String getSymbol() { return symbol; }
+    public String getSide() { return side; }
+    public int getQuantity() { return quantity; }
+    public int getFilledQuantity() { return filledQuantity; }
+    public int getRemainingQuantity() { return remainingQuantity; }
+}
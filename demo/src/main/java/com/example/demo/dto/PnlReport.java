@@ -0,0 +1,17 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Profit and loss of a portfolio on FIFO tax lots: realized on closed lots,
+ * unrealized on open lots marked at the latest price.
+ */
+public record PnlReport(long portfolioId, BigDecimal realized, BigDecimal unrealized, BigDecimal total,
+                        List<PositionPnl> positions, Instant timestamp) {
+
+    /** One symbol's share of the report. Shares are negative for a short position. */
+    public record PositionPnl(String symbol, long shares, int openLots, BigDecimal averageCost,
+                              BigDecimal marketPrice, BigDecimal realized, BigDecimal unrealized) { }
+}
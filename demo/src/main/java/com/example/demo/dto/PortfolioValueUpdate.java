@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public class PortfolioValueUpdate {
+    private final long portfolioId;
+    private final BigDecimal value;
+    private final Instant timestamp;
+
+    public PortfolioValueUpdate(long portfolioId, BigDecimal value, Instant timestamp) {
+        this.portfolioId = portfolioId;
+        this.value = value;
+        this.timestamp = timestamp;
+    }
+
+    public long getPortfolioId() { return portfolioId; }
+    public BigDecimal getValue() { return value; }
+    public Instant getTimestamp() { return timestamp; }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a portfolio's transactions, newest first. {@code nextCursor}
+ * marks the last row returned and is null on the final page.
+ */
+public record TransactionPage(List<TransactionRow> items, String nextCursor) {
+
+    /** Position in the (timestamp, id) order; pages resume strictly after it. */
+    public record Cursor(LocalDateTime timestamp, long id) {
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** @throws IllegalArgumentException if {@code cursor} did not come from {@link #encode} */
+        public static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int bar = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+    }
+
+    public static TransactionPage of(List<TransactionRow> rows, int limit) {
+        if (rows.size() < limit) return new TransactionPage(rows, null);
+        TransactionRow last = rows.get(rows.size() - 1);
+        return new TransactionPage(rows, new Cursor(last.timestamp(), last.id()).encode());
+    }
+}
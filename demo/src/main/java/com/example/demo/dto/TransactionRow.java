@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.example.demo.entity.TradeType;
+
+/**
+ * A transaction as the history endpoints return it. Read straight from a query
+ * rather than as an entity, so paging and streaming never fill the
+ * persistence context.
+ */
+public record TransactionRow(Long id, String stockSymbol, TradeType type, int quantity,
+                             BigDecimal price, LocalDateTime timestamp) { }
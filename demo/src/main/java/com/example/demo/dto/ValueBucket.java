@@ -0,0 +1,43 @@
+package com.example.demo.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.example.demo.entity.PortfolioValueRollup;
+
+/** One point of a portfolio value chart: a rollup bucket, or the live value. */
+public class ValueBucket {
+    private final Instant timestamp;
+    private final BigDecimal open;
+    private final BigDecimal high;
+    private final BigDecimal low;
+    private final BigDecimal close;
+    private final int samples;
+
+    public ValueBucket(Instant timestamp, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, int samples) {
+        this.timestamp = timestamp;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.samples = samples;
+    }
+
+    public static ValueBucket of(PortfolioValueRollup rollup) {
+        return new ValueBucket(rollup.getBucketStart(), rollup.getOpen(), rollup.getHigh(), rollup.getLow(),
+            rollup.getClose(), rollup.getSamples());
+    }
+
+    public static ValueBucket live(Instant timestamp, BigDecimal value) {
+        return new ValueBucket(timestamp, value, value, value, value, 0);
+    }
+
+    public Instant getTimestamp() { return timestamp; }
+    public BigDecimal getOpen() { return open; }
+    public BigDecimal getHigh() { return high; }
+    public BigDecimal getLow() { return low; }
+    public BigDecimal getClose() { return close; }
+    /** The bucket's closing value, which is what a line chart plots. */
+    public BigDecimal getValue() { return close; }
+    public int getSamples() { return samples; }
+}
@@ -7,8 +7,13 @@ import java.time.Instant;
 @Entity
 @Table(name = "portfolio_value_history")
 public class PortfolioValueHistory {
+    /** Id sequence; each value it returns starts a block of {@link #ID_BLOCK_SIZE} ids. */
+    public static final String ID_SEQUENCE = "portfolio_value_history_seq";
+    public static final int ID_BLOCK_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_BLOCK_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
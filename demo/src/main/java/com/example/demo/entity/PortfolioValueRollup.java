@@ -0,0 +1,88 @@
+package com.example.demo.entity;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Open, high, low and close of a portfolio's value snapshots within one time
+ * bucket, kept up to date as each snapshot is written.
+ */
+@Entity
+@Table(name = "portfolio_value_rollups")
+@IdClass(PortfolioValueRollup.Key.class)
+public class PortfolioValueRollup {
+    @Id
+    @Column(name = "portfolio_id")
+    private Long portfolioId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private RollupResolution resolution;
+
+    @Id
+    @Column(name = "bucket_start")
+    private Instant bucketStart;
+
+    @Column(name = "open_value", precision = 19, scale = 4)
+    private BigDecimal open;
+    @Column(name = "high_value", precision = 19, scale = 4)
+    private BigDecimal high;
+    @Column(name = "low_value", precision = 19, scale = 4)
+    private BigDecimal low;
+    @Column(name = "close_value", precision = 19, scale = 4)
+    private BigDecimal close;
+
+    /** Times of the snapshots that set open and close, so late arrivals land in the right place. */
+    @Column(name = "first_at")
+    private Instant firstAt;
+    @Column(name = "last_at")
+    private Instant lastAt;
+
+    private int samples;
+
+    public Long getPortfolioId() { return portfolioId; }
+    public RollupResolution getResolution() { return resolution; }
+    public Instant getBucketStart() { return bucketStart; }
+    public BigDecimal getOpen() { return open; }
+    public BigDecimal getHigh() { return high; }
+    public BigDecimal getLow() { return low; }
+    public BigDecimal getClose() { return close; }
+    public Instant getFirstAt() { return firstAt; }
+    public Instant getLastAt() { return lastAt; }
+    public int getSamples() { return samples; }
+
+    public static class Key implements Serializable {
+        private Long portfolioId;
+        private RollupResolution resolution;
+        private Instant bucketStart;
+
+        public Key() {}
+        public Key(Long portfolioId, RollupResolution resolution, Instant bucketStart) {
+            this.portfolioId = portfolioId;
+            this.resolution = resolution;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(portfolioId, k.portfolioId)
+                && resolution == k.resolution && Objects.equals(bucketStart, k.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(portfolioId, resolution, bucketStart);
+        }
+    }
+}
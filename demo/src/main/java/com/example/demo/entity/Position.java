@@ -0,0 +1,71 @@
+package com.example.demo.entity;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Net holdings of one symbol in one portfolio, kept up to date in the same
+ * database transaction as every trade written to {@code transactions}.
+ */
+@Entity
+@Table(name = "positions")
+@IdClass(Position.Key.class)
+public class Position {
+    @Id
+    @Column(name = "portfolio_id")
+    private Long portfolioId;
+
+    @Id
+    private String symbol;
+
+    private long quantity;
+
+    @Column(name = "cost_basis", precision = 19, scale = 4)
+    private BigDecimal costBasis;
+
+    @Column(name = "last_price", precision = 19, scale = 4)
+    private BigDecimal lastPrice;
+
+    public Position() {}
+    public Position(Long portfolioId, String symbol, long quantity, BigDecimal costBasis, BigDecimal lastPrice) {
+        this.portfolioId = portfolioId;
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.costBasis = costBasis;
+        this.lastPrice = lastPrice;
+    }
+
+    public Long getPortfolioId() { return portfolioId; }
+    public String getSymbol() { return symbol; }
+    public long getQuantity() { return quantity; }
+    public BigDecimal getCostBasis() { return costBasis; }
+    public BigDecimal getLastPrice() { return lastPrice; }
+
+    public static class Key implements Serializable {
+        private Long portfolioId;
+        private String symbol;
+
+        public Key() {}
+        public Key(Long portfolioId, String symbol) {
+            this.portfolioId = portfolioId;
+            this.symbol = symbol;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(portfolioId, k.portfolioId) && Objects.equals(symbol, k.symbol);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(portfolioId, symbol);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.entity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/** Bucket widths for portfolio value rollups. Buckets are aligned to UTC. */
+public enum RollupResolution {
+    MINUTE(ChronoUnit.MINUTES), HOUR(ChronoUnit.HOURS), DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RollupResolution(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public Instant bucketStart(Instant at) {
+        return at.truncatedTo(unit);
+    }
+
+    public Duration width() {
+        return unit.getDuration();
+    }
+
+    /** The finest resolution that covers {@code span} in at most {@code maxBuckets} buckets, else DAY. */
+    public static RollupResolution forSpan(Duration span, int maxBuckets) {
+        for (RollupResolution resolution : values()) {
+            if (span.dividedBy(resolution.width()) <= maxBuckets) return resolution;
+        }
+        return DAY;
+    }
+}
@@ -14,14 +14,23 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions",
+       indexes = @Index(name = "idx_transactions_portfolio_time", columnList = "portfolio_id, timestamp, id"))
 public class Transaction {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /** Id sequence; each value it returns starts a block of {@link #ID_BLOCK_SIZE} ids. */
+    public static final String ID_SEQUENCE = "transactions_seq";
+    public static final int ID_BLOCK_SIZE = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_BLOCK_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
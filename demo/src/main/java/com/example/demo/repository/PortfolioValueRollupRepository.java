@@ -0,0 +1,64 @@
+package com.example.demo.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.demo.entity.PortfolioValueRollup;
+import com.example.demo.entity.RollupResolution;
+
+public interface PortfolioValueRollupRepository extends JpaRepository<PortfolioValueRollup, PortfolioValueRollup.Key> {
+    /**
+     * Folds one snapshot into its bucket, creating the bucket if needed.
+     * Parameters are portfolio id, resolution, bucket start, snapshot time and
+     * value. Open and close follow snapshot time, not arrival order. Run
+     * through {@link com.example.demo.service.Upserts}, which picks this or
+     * {@link #APPLY_SNAPSHOT_ON_DUPLICATE_KEY} for the database.
+     */
+    String APPLY_SNAPSHOT = """
+        MERGE INTO portfolio_value_rollups r
+        USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(10)), CAST(? AS TIMESTAMP WITH TIME ZONE),
+                       CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS DECIMAL(19,4))))
+            AS s(portfolio_id, resolution, bucket_start, sampled_at, amount)
+        ON r.portfolio_id = s.portfolio_id AND r.resolution = s.resolution AND r.bucket_start = s.bucket_start
+        WHEN MATCHED THEN UPDATE SET
+            open_value = CASE WHEN s.sampled_at < r.first_at THEN s.amount ELSE r.open_value END,
+            close_value = CASE WHEN s.sampled_at >= r.last_at THEN s.amount ELSE r.close_value END,
+            high_value = GREATEST(r.high_value, s.amount),
+            low_value = LEAST(r.low_value, s.amount),
+            first_at = LEAST(r.first_at, s.sampled_at),
+            last_at = GREATEST(r.last_at, s.sampled_at),
+            samples = r.samples + 1
+        WHEN NOT MATCHED THEN INSERT (portfolio_id, resolution, bucket_start, open_value, high_value, low_value,
+                                      close_value, first_at, last_at, samples)
+            VALUES (s.portfolio_id, s.resolution, s.bucket_start, s.amount, s.amount, s.amount, s.amount,
+                    s.sampled_at, s.sampled_at, 1)
+        """;
+
+    /**
+     * {@link #APPLY_SNAPSHOT} for MySQL and MariaDB. Parameters are portfolio
+     * id, resolution, bucket start, the value four times (open, high, low,
+     * close) and the snapshot time twice (first, last). Open and close are
+     * assigned before the times they compare against.
+     */
+    String APPLY_SNAPSHOT_ON_DUPLICATE_KEY = """
+        INSERT INTO portfolio_value_rollups (portfolio_id, resolution, bucket_start, open_value, high_value, low_value,
+                                             close_value, first_at, last_at, samples)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1)
+        ON DUPLICATE KEY UPDATE
+            open_value = CASE WHEN first_at > VALUES(first_at) THEN VALUES(open_value) ELSE open_value END,
+            close_value = CASE WHEN last_at <= VALUES(last_at) THEN VALUES(close_value) ELSE close_value END,
+            high_value = GREATEST(high_value, VALUES(high_value)),
+            low_value = LEAST(low_value, VALUES(low_value)),
+            first_at = LEAST(first_at, VALUES(first_at)),
+            last_at = GREATEST(last_at, VALUES(last_at)),
+            samples = samples + 1
+        """;
+
+    /** Buckets starting in [from, to), oldest first. */
+    @Query("SELECT r FROM PortfolioValueRollup r WHERE r.portfolioId = :portfolioId AND r.resolution = :resolution"
+        + " AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<PortfolioValueRollup> findRange(Long portfolioId, RollupResolution resolution, Instant from, Instant to);
+}
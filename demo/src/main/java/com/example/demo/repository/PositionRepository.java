@@ -0,0 +1,63 @@
+package com.example.demo.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.demo.entity.Position;
+
+public interface PositionRepository extends JpaRepository<Position, Position.Key> {
+    /**
+     * Applies one trade to a position, creating it if needed. Parameters are
+     * portfolio id, symbol, signed quantity (negative for a sell) and price.
+     * Cost basis is average cost, worked out from the row's current values, so
+     * concurrent writers serialize on the row instead of overwriting each other.
+     * Run through {@link com.example.demo.service.Upserts}, which picks this or
+     * {@link #APPLY_FILL_ON_DUPLICATE_KEY} for the database.
+     */
+    String APPLY_FILL = """
+        MERGE INTO positions p
+        USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), CAST(? AS DECIMAL(19,4))))
+            AS f(portfolio_id, symbol, delta, price)
+        ON p.portfolio_id = f.portfolio_id AND p.symbol = f.symbol
+        WHEN MATCHED THEN UPDATE SET
+            cost_basis = CASE
+                WHEN p.quantity + f.delta <= 0 THEN 0
+                WHEN f.delta > 0 AND p.quantity >= 0 THEN p.cost_basis + f.delta * f.price
+                WHEN f.delta > 0 THEN (p.quantity + f.delta) * f.price
+                ELSE p.cost_basis * (p.quantity + f.delta) / p.quantity
+            END,
+            quantity = p.quantity + f.delta,
+            last_price = f.price
+        WHEN NOT MATCHED THEN INSERT (portfolio_id, symbol, quantity, cost_basis, last_price)
+            VALUES (f.portfolio_id, f.symbol, f.delta, CASE WHEN f.delta > 0 THEN f.delta * f.price ELSE 0 END, f.price)
+        """;
+
+    /**
+     * {@link #APPLY_FILL} for MySQL and MariaDB, which have no MERGE.
+     * Parameters are portfolio id, symbol, signed quantity, the fill's cost
+     * (quantity times price for a buy, zero for a sell) and price. MySQL
+     * assigns left to right, so cost basis comes first and still sees the old
+     * quantity.
+     */
+    String APPLY_FILL_ON_DUPLICATE_KEY = """
+        INSERT INTO positions (portfolio_id, symbol, quantity, cost_basis, last_price)
+        VALUES (?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            cost_basis = CASE
+                WHEN quantity + VALUES(quantity) <= 0 THEN 0
+                WHEN 0 < VALUES(quantity) AND quantity >= 0 THEN cost_basis + VALUES(cost_basis)
+                WHEN 0 < VALUES(quantity) THEN (quantity + VALUES(quantity)) * VALUES(last_price)
+                ELSE cost_basis * (quantity + VALUES(quantity)) / quantity
+            END,
+            quantity = quantity + VALUES(quantity),
+            last_price = VALUES(last_price)
+        """;
+
+    List<Position> findByPortfolioId(Long portfolioId);
+
+    /** Net shares held across all portfolios, per symbol; reconciles against {@link TransactionRepository#netQuantityBySymbol}. */
+    @Query("SELECT p.symbol AS symbol, SUM(p.quantity) AS quantity FROM Position p GROUP BY p.symbol ORDER BY p.symbol")
+    List<SymbolQuantity> netQuantityBySymbol();
+}
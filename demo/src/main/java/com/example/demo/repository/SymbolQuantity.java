@@ -0,0 +1,7 @@
+package com.example.demo.repository;
+
+/** Net share count per symbol, from an aggregate query. */
+public interface SymbolQuantity {
+    String getSymbol();
+    Long getQuantity();
+}
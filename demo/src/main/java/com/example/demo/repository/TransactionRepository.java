@@ -1,11 +1,52 @@
 package com.example.demo.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import com.example.demo.dto.TransactionRow;
 import com.example.demo.entity.Transaction;
 
+import jakarta.persistence.QueryHint;
+
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     List<Transaction> findByPortfolioId(Long portfolioId);
+
+    String ROW = "SELECT new com.example.demo.dto.TransactionRow(t.id, t.stockSymbol, t.type, t.quantity, t.price, t.timestamp)"
+        + " FROM Transaction t WHERE t.portfolio.id = :portfolioId";
+    String NEWEST_FIRST = " ORDER BY t.timestamp DESC, t.id DESC";
+
+    /** The newest {@code limit} transactions, newest first. */
+    @Query(ROW + NEWEST_FIRST)
+    List<TransactionRow> findPage(Long portfolioId, Limit limit);
+
+    /** The next {@code limit} transactions older than (timestamp, id), newest first. */
+    @Query(ROW + " AND (t.timestamp < :timestamp OR (t.timestamp = :timestamp AND t.id < :id))" + NEWEST_FIRST)
+    List<TransactionRow> findPageBefore(Long portfolioId, LocalDateTime timestamp, Long id, Limit limit);
+
+    /**
+     * Every transaction, newest first, fetched in chunks; must be consumed inside a transaction.
+     * MySQL Connector/J ignores the fetch size and buffers the whole result unless the URL sets
+     * useCursorFetch=true, as application-mysql.properties does.
+     */
+    @Query(ROW + NEWEST_FIRST)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<TransactionRow> streamByPortfolioId(Long portfolioId);
+
+    /** Every transaction, oldest first, for replaying a portfolio's trades in order; chunked as above. */
+    @Query(ROW + " ORDER BY t.timestamp, t.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<TransactionRow> streamOldestFirst(Long portfolioId);
+
+    /** Net shares bought minus sold across all portfolios, per symbol. */
+    @Query("SELECT t.stockSymbol AS symbol, SUM(CASE WHEN t.type = com.example.demo.entity.TradeType.BUY"
+        + " THEN t.quantity ELSE -t.quantity END) AS quantity"
+        + " FROM Transaction t GROUP BY t.stockSymbol ORDER BY t.stockSymbol")
+    List<SymbolQuantity> netQuantityBySymbol();
 }
@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Latest trade prices from Alpha Vantage's GLOBAL_QUOTE endpoint. Every call
+ * in the app goes through here and takes a token from one bucket sized to the
+ * API key's quota; with none left, the call is not made.
+ */
+@Service
+@ConditionalOnProperty(name = "market.provider", havingValue = "alphavantage", matchIfMissing = true)
+public class AlphaVantageClient implements MarketDataProvider {
+    private static final Logger logger = LoggerFactory.getLogger(AlphaVantageClient.class);
+
+    private final RestTemplate restTemplate;
+    private final String apiKey;
+    private final String apiUrl;
+    private final TokenBucket quota;
+
+    public AlphaVantageClient(RestTemplate restTemplate,
+                              @Value("${market.api.key:demo}") String apiKey,
+                              @Value("${market.api.url:https://www.alphavantage.co/query}") String apiUrl,
+                              @Value("${market.api.calls-per-minute:5}") int callsPerMinute) {
+        this.restTemplate = restTemplate;
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.quota = new TokenBucket(callsPerMinute, Duration.ofMinutes(1), System::nanoTime);
+    }
+
+    @Override
+    public int availableCalls() {
+        return quota.available();
+    }
+
+    /**
+     * The symbol's latest price, or null if the API has none, refuses the
+     * call (it answers with a "Note" when the rate limit is hit), or the quota
+     * is used up.
+     */
+    @Override
+    public BigDecimal fetchPrice(String symbol) {
+        if (!quota.tryAcquire()) {
+            logger.debug("Quote quota used up; not fetching {}", symbol);
+            return null;
+        }
+        try {
+            String url = apiUrl + "?function=GLOBAL_QUOTE&symbol=" + symbol + "&apikey=" + apiKey;
+            Map response = restTemplate.getForObject(url, Map.class);
+            if (response == null) {
+                logger.warn("Null response from Alpha Vantage for {}", symbol);
+                return null;
+            }
+            if (response.containsKey("Error Message")) {
+                logger.warn("Alpha Vantage error for {}: {}", symbol, response.get("Error Message"));
+                return null;
+            }
+            if (response.containsKey("Note")) {
+                logger.warn("Alpha Vantage note for {}: {}", symbol, response.get("Note"));
+                return null;
+            }
+            Map quote = (Map) response.get("Global Quote");
+            if (quote == null || quote.get("05. price") == null) {
+                logger.warn("No price data for {} in Alpha Vantage response", symbol);
+                return null;
+            }
+            return new BigDecimal(quote.get("05. price").toString());
+        } catch (Exception e) {
+            logger.warn("Error fetching price for {}: {}", symbol, e.getMessage());
+            return null;
+        }
+    }
+}
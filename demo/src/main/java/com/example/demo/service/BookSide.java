@@ -0,0 +1,100 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+/**
+ * One side of a price ladder. Levels are kept sorted with the best price in
+ * the last slot, so reading or retiring the top of book is O(1) and a new
+ * level is placed by binary search. Most activity happens near the touch, so
+ * the array shift on insert is short in practice. Emptied levels are kept on
+ * a small free list and reused, so steady-state matching does not allocate.
+ */
+public class BookSide {
+    private final boolean bids;
+    private long[] prices = new long[16];
+    private PriceLevel[] levels = new PriceLevel[16];
+    private int size;
+    private PriceLevel[] spare = new PriceLevel[16];
+    private int spareCount;
+
+    BookSide(boolean bids) {
+        this.bids = bids;
+    }
+
+    public PriceLevel best() {
+        return size == 0 ? null : levels[size - 1];
+    }
+
+    public int levelCount() { return size; }
+
+    /** Level {@code depth} steps away from the touch; 0 is the best price. */
+    public PriceLevel levelAt(int depth) {
+        return levels[size - 1 - depth];
+    }
+
+    /** True if an incoming order on the opposite side at {@code price} can trade with the best level. */
+    boolean crosses(long price) {
+        if (size == 0) return false;
+        long best = prices[size - 1];
+        return bids ? best >= price : best <= price;
+    }
+
+    PriceLevel levelFor(long price) {
+        int i = search(price);
+        if (i >= 0) return levels[i];
+        int insertAt = -i - 1;
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(prices, insertAt, prices, insertAt + 1, size - insertAt);
+        System.arraycopy(levels, insertAt, levels, insertAt + 1, size - insertAt);
+        PriceLevel level = (spareCount == 0 ? new PriceLevel() : spare[--spareCount]).reset(price);
+        prices[insertAt] = price;
+        levels[insertAt] = level;
+        size++;
+        return level;
+    }
+
+    void removeBest() {
+        recycle(levels[--size]);
+        levels[size] = null;
+    }
+
+    /** Drops an emptied level from anywhere in the ladder, e.g. after its last order is cancelled. */
+    void remove(PriceLevel level) {
+        int i = search(level.getPrice());
+        if (i < 0 || levels[i] != level) return;
+        System.arraycopy(prices, i + 1, prices, i, size - i - 1);
+        System.arraycopy(levels, i + 1, levels, i, size - i - 1);
+        levels[--size] = null;
+        recycle(level);
+    }
+
+    private void recycle(PriceLevel level) {
+        if (spareCount < spare.length) spare[spareCount++] = level;
+    }
+
+    public long totalQuantity() {
+        long total = 0;
+        for (int i = 0; i < size; i++) total += levels[i].getTotalQuantity();
+        return total;
+    }
+
+    /**
+     * Bids are stored ascending and asks descending so that, either way, the
+     * best price sits at {@code size - 1}.
+     */
+    private int search(long price) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long p = prices[mid];
+            if (p == price) return mid;
+            boolean before = bids ? p < price : p > price;
+            if (before) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -(lo + 1);
+    }
+}
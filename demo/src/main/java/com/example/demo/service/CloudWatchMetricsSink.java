@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.Dimension;
+import software.amazon.awssdk.services.cloudwatch.model.MetricDatum;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+import software.amazon.awssdk.services.cloudwatch.model.StandardUnit;
+
+/**
+ * Sends metrics to CloudWatch under the StockSimulator namespace, at most
+ * {@value #MAX_DATUMS_PER_REQUEST} datums per PutMetricData call. The client
+ * is created on first use, so the application starts without AWS
+ * configuration.
+ */
+@Component
+@ConditionalOnProperty(name = "metrics.sink", havingValue = "cloudwatch", matchIfMissing = true)
+public class CloudWatchMetricsSink implements MetricsSink {
+    private static final Logger logger = LoggerFactory.getLogger(CloudWatchMetricsSink.class);
+
+    static final int MAX_DATUMS_PER_REQUEST = 1000;
+    private static final String NAMESPACE = "StockSimulator";
+    private static final Dimension APPLICATION =
+        Dimension.builder().name("Application").value("StockSimulator").build();
+
+    private final Supplier<CloudWatchClient> clientFactory;
+    private CloudWatchClient cloudWatch;
+
+    @Autowired
+    public CloudWatchMetricsSink() {
+        this(CloudWatchClient::create);
+    }
+
+    public CloudWatchMetricsSink(Supplier<CloudWatchClient> clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    @Override
+    public void publish(List<Datum> datums) {
+        if (cloudWatch == null) cloudWatch = clientFactory.get();
+        for (int from = 0; from < datums.size(); from += MAX_DATUMS_PER_REQUEST) {
+            List<Datum> batch = datums.subList(from, Math.min(datums.size(), from + MAX_DATUMS_PER_REQUEST));
+            List<MetricDatum> metricData = new ArrayList<>(batch.size());
+            for (Datum datum : batch) {
+                metricData.add(MetricDatum.builder()
+                    .metricName(datum.name())
+                    .unit(StandardUnit.fromValue(datum.unit()))
+                    .value(datum.value())
+                    .timestamp(datum.timestamp())
+                    .dimensions(APPLICATION)
+                    .build());
+            }
+            cloudWatch.putMetricData(PutMetricDataRequest.builder()
+                .namespace(NAMESPACE)
+                .metricData(metricData)
+                .build());
+        }
+        logger.debug("Published {} metric datums to CloudWatch", datums.size());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.OrderBookDepth;
+
+/**
+ * Conflated market-depth feed on /topic/depth/{symbol}. Instead of sending a
+ * frame per book change, each tick checks every book's version and sends one
+ * frame for each book that moved since the last tick. A burst of fills
+ * therefore costs subscribers at most one frame per symbol per interval, and
+ * the frame always shows the latest state.
+ */
+@Service
+public class DepthPublisher {
+    private final OrderMatchingService matchingService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int levels;
+
+    /** Version of each book as last sent, indexed by symbol id. Only touched by the scheduler thread. */
+    private long[] sentVersions = new long[64];
+
+    public DepthPublisher(OrderMatchingService matchingService,
+                          SimpMessagingTemplate messagingTemplate,
+                          @Value("${orderbook.depth.levels:10}") int levels) {
+        this.matchingService = matchingService;
+        this.messagingTemplate = messagingTemplate;
+        this.levels = levels;
+    }
+
+    @Scheduled(fixedRateString = "${orderbook.depth.interval-ms:250}")
+    public void publishChanged() {
+        int limit = matchingService.symbolIdLimit();
+        if (limit > sentVersions.length) sentVersions = Arrays.copyOf(sentVersions, Math.max(limit, sentVersions.length * 2));
+        for (int symbolId = 0; symbolId < limit; symbolId++) {
+            if (matchingService.symbol(symbolId) == null) continue;
+            OrderBookDepth depth = matchingService.depthIfChanged(symbolId, levels, sentVersions[symbolId]);
+            if (depth == null) continue;
+            messagingTemplate.convertAndSend("/topic/depth/" + depth.getSymbol(), depth);
+            sentVersions[symbolId] = depth.getVersion();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+/**
+ * Fills produced by one incoming order, stored column-wise in primitive
+ * arrays. Buffers are reused (ring slots keep one each), so recording fills
+ * only allocates when an order sweeps more levels than any order before it.
+ */
+public final class FillBuffer implements OrderBook.FillHandler {
+    private int[] symbolIds = new int[8];
+    private long[] takerOrderIds = new long[8];
+    private long[] makerOrderIds = new long[8];
+    private boolean[] takerBuys = new boolean[8];
+    private long[] takerPortfolioIds = new long[8];
+    private long[] makerPortfolioIds = new long[8];
+    private long[] prices = new long[8];
+    private int[] quantities = new int[8];
+    private int size;
+
+    @Override
+    public void onFill(int symbolId, long takerOrderId, long makerOrderId, boolean takerBuy,
+                       long takerPortfolioId, long makerPortfolioId, long price, int quantity) {
+        if (size == prices.length) grow();
+        symbolIds[size] = symbolId;
+        takerOrderIds[size] = takerOrderId;
+        makerOrderIds[size] = makerOrderId;
+        takerBuys[size] = takerBuy;
+        takerPortfolioIds[size] = takerPortfolioId;
+        makerPortfolioIds[size] = makerPortfolioId;
+        prices[size] = price;
+        quantities[size] = quantity;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int symbolId(int i) { return symbolIds[i]; }
+    public long takerOrderId(int i) { return takerOrderIds[i]; }
+    public long makerOrderId(int i) { return makerOrderIds[i]; }
+    public boolean takerBuy(int i) { return takerBuys[i]; }
+    public long takerPortfolioId(int i) { return takerPortfolioIds[i]; }
+    public long makerPortfolioId(int i) { return makerPortfolioIds[i]; }
+    public long price(int i) { return prices[i]; }
+    public int quantity(int i) { return quantities[i]; }
+
+    public long filledQuantity() {
+        long total = 0;
+        for (int i = 0; i < size; i++) total += quantities[i];
+        return total;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void grow() {
+        int capacity = size * 2;
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+        takerOrderIds = Arrays.copyOf(takerOrderIds, capacity);
+        makerOrderIds = Arrays.copyOf(makerOrderIds, capacity);
+        takerBuys = Arrays.copyOf(takerBuys, capacity);
+        takerPortfolioIds = Arrays.copyOf(takerPortfolioIds, capacity);
+        makerPortfolioIds = Arrays.copyOf(makerPortfolioIds, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Hands out entity ids to code that inserts rows with plain JDBC, drawn from
+ * the same sequences Hibernate uses. Hibernate is set to the pooled-lo
+ * optimizer, so every value a sequence returns is the first id of a block of
+ * {@code blockSize} ids that belongs to whoever drew it; drawing blocks the
+ * same way here means JDBC and JPA inserts can never collide.
+ *
+ * On a database without sequences Hibernate keeps each one as a single-row
+ * table, and blocks are drawn from that table in a transaction of their own,
+ * as Hibernate does, so a rolled-back caller never hands a block back.
+ */
+@Service
+public class IdBlocks {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate separateTransaction;
+    private final Dialect dialect;
+    private final ConcurrentHashMap<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public IdBlocks(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                    EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.separateTransaction = new TransactionTemplate(transactionManager);
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    /** The next id from {@code sequence}, whose generator allocates {@code blockSize} ids at a time. */
+    public long next(String sequence, int blockSize) {
+        Block block = blocks.computeIfAbsent(sequence, name -> new Block());
+        synchronized (block) {
+            if (block.next == block.end) {
+                block.next = draw(sequence, blockSize);
+                block.end = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    private long draw(String sequence, int blockSize) {
+        if (dialect.getSequenceSupport().supportsSequences()) {
+            return jdbcTemplate.queryForObject(dialect.getSequenceSupport().getSequenceNextValString(sequence), Long.class);
+        }
+        return separateTransaction.execute(status -> {
+            long first = jdbcTemplate.queryForObject(
+                "SELECT next_val FROM " + sequence + dialect.getForUpdateString(), Long.class);
+            jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ? WHERE next_val = ?", first + blockSize, first);
+            return first;
+        });
+    }
+
+    private static final class Block {
+        long next;
+        long end;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/** Local stand-in for CloudWatch: writes each flush to the log. */
+@Component
+@ConditionalOnProperty(name = "metrics.sink", havingValue = "log")
+public class LoggingMetricsSink implements MetricsSink {
+    private static final Logger logger = LoggerFactory.getLogger(LoggingMetricsSink.class);
+
+    @Override
+    public void publish(List<Datum> datums) {
+        for (Datum datum : datums) {
+            logger.info("Metric {} = {} {}", datum.name(), datum.value(), datum.unit());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.PortfolioValueUpdate;
+
+/**
+ * Keeps the market value of every portfolio in the {@link PositionLedger} up
+ * to date as prices tick, and publishes it on /topic/portfolio/{id}.
+ *
+ * An inverted index maps each symbol to the portfolios long in it and their
+ * share counts, maintained from the ledger's change notifications. A tick for
+ * a symbol walks only that symbol's holders and adjusts each value by
+ * shares x (new price - old price), so its cost is the number of holders, not
+ * the number of portfolios. Short positions count as zero, as they do in
+ * {@link PositionLedger#value}.
+ *
+ * Ticks and share changes for one symbol are serialized on that symbol's
+ * holder set, so a portfolio never misses or double counts a price move.
+ *
+ * A tick only marks the revalued portfolios dirty; {@link #publishChanged}
+ * sends each dirty portfolio's latest value once per interval, so a busy
+ * symbol costs one message per holder per interval rather than per tick, and
+ * the market-data thread never waits on the broker.
+ */
+@Service
+public class MarkToMarket implements PositionLedger.Listener {
+    private final MarketPrices prices;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConcurrentHashMap<String, Holders> holders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Mark> marks = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public MarkToMarket(PositionLedger ledger, MarketPrices prices, SimpMessagingTemplate messagingTemplate) {
+        this.prices = prices;
+        this.messagingTemplate = messagingTemplate;
+        ledger.addListener(this);
+    }
+
+    /**
+     * Applies a price tick: revalues every portfolio holding {@code symbol} and
+     * marks it for the next publish. Returns how many portfolios were revalued.
+     */
+    public int onTick(String symbol, BigDecimal price) {
+        Holders h = holders.computeIfAbsent(symbol, s -> new Holders());
+        synchronized (h) {
+            BigDecimal change = price.subtract(prices.update(symbol, price));
+            if (change.signum() == 0 || h.byPortfolio.isEmpty()) return 0;
+            for (Exposure exposure : h.byPortfolio.values()) {
+                exposure.mark.add(change.multiply(BigDecimal.valueOf(exposure.shares)));
+                dirty.add(exposure.mark.portfolioId);
+            }
+            return h.byPortfolio.size();
+        }
+    }
+
+    /** Publishes the current value of every portfolio revalued since the last run. */
+    @Scheduled(fixedRateString = "${portfolio.valuation.interval-ms:250}")
+    public void publishChanged() {
+        Instant now = Instant.now();
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+            long portfolioId = it.next();
+            // Unmarked before the value is read, so a tick meanwhile marks it again
+            it.remove();
+            Mark mark = marks.get(portfolioId);
+            if (mark == null) continue;
+            messagingTemplate.convertAndSend("/topic/portfolio/" + portfolioId,
+                new PortfolioValueUpdate(portfolioId, mark.get(), now));
+        }
+    }
+
+    @Override
+    public void onSharesChanged(long portfolioId, String symbol, long before, long after) {
+        long longBefore = Math.max(before, 0);
+        long longAfter = Math.max(after, 0);
+        if (longBefore == longAfter) return;
+        Holders h = holders.computeIfAbsent(symbol, s -> new Holders());
+        synchronized (h) {
+            Mark mark = marks.computeIfAbsent(portfolioId, Mark::new);
+            if (longAfter == 0) {
+                h.byPortfolio.remove(portfolioId);
+            } else {
+                h.byPortfolio.computeIfAbsent(portfolioId, id -> new Exposure(mark)).shares = longAfter;
+            }
+            mark.add(prices.price(symbol).multiply(BigDecimal.valueOf(longAfter - longBefore)));
+        }
+    }
+
+    /** Market value of a portfolio's long positions, or zero if it holds none or is not in the ledger. */
+    public BigDecimal value(long portfolioId) {
+        Mark mark = marks.get(portfolioId);
+        return mark == null ? BigDecimal.ZERO : mark.get();
+    }
+
+    /** Number of portfolios currently long {@code symbol}. */
+    public int holderCount(String symbol) {
+        Holders h = holders.get(symbol);
+        if (h == null) return 0;
+        synchronized (h) {
+            return h.byPortfolio.size();
+        }
+    }
+
+    private static final class Holders {
+        final Map<Long, Exposure> byPortfolio = new HashMap<>();
+    }
+
+    private static final class Exposure {
+        final Mark mark;
+        long shares;
+
+        Exposure(Mark mark) {
+            this.mark = mark;
+        }
+    }
+
+    private static final class Mark {
+        final long portfolioId;
+        private BigDecimal value = BigDecimal.ZERO;
+
+        Mark(long portfolioId) {
+            this.portfolioId = portfolioId;
+        }
+
+        synchronized BigDecimal add(BigDecimal delta) {
+            value = value.add(delta);
+            return value;
+        }
+
+        synchronized BigDecimal get() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+
+/**
+ * Where prices come from. {@code market.provider} picks the implementation:
+ * {@code alphavantage} ({@link AlphaVantageClient}, the default) or
+ * {@code simulated} ({@link SimulatedMarketData}).
+ */
+public interface MarketDataProvider {
+
+    /** The symbol's latest price, or null if the provider has none or cannot be asked right now. */
+    BigDecimal fetchPrice(String symbol);
+
+    /** Price requests that can be made right now without going over the provider's quota. */
+    int availableCalls();
+
+    /**
+     * Starts pushing ticks to {@code ticks}, for providers that stream. A
+     * polling provider has nothing to push and ignores this.
+     */
+    default void stream(BiConsumer<String, BigDecimal> ticks) { }
+}
@@ -1,50 +1,109 @@
 package com.example.demo.service;
 
-import java.time.Instant;
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import com.example.demo.dto.MarketQuote;
+import com.example.demo.repository.StockRepository;
 
+/**
+ * Schedules quote refreshes within the API quota. Each round it takes every
+ * stock in the database plus every symbol someone is subscribed to, drops
+ * those refreshed within {@code minAge}, and refreshes the rest in order of
+ * demand (live subscribers, then recent REST reads), oldest quote first among
+ * equals, for as long as the quota has calls left. Whatever is left waits for
+ * a later round.
+ *
+ * Ticks from a streaming provider take the same path as refreshed quotes:
+ * into the cache, out to /topic/prices subscribers, and through mark-to-market
+ * and P&L.
+ */
 @Service
 public class MarketDataService {
-    private final SimpMessagingTemplate messagingTemplate;
-    private final RestTemplate restTemplate;
-    private final String apiKey;
-    private final String apiUrl;
-    private final List<String> symbols = List.of("AAPL", "GOOG", "MSFT");
-
-    public MarketDataService(SimpMessagingTemplate messagingTemplate,
-                             RestTemplate restTemplate,
-                             @Value("${market.api.key}") String apiKey,
-                             @Value("${market.api.url}") String apiUrl) {
-        this.messagingTemplate = messagingTemplate;
-        this.restTemplate = restTemplate;
-        this.apiKey = apiKey;
-        this.apiUrl = apiUrl;
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataService.class);
+
+    private final PriceBroadcaster priceBroadcaster;
+    private final QuoteCache quoteCache;
+    private final QuoteDemand quoteDemand;
+    private final MarketDataProvider provider;
+    private final StockRepository stockRepository;
+    private final MarkToMarket markToMarket;
+    private final PnlEngine pnlEngine;
+    private final long minAgeMillis;
+
+    public MarketDataService(PriceBroadcaster priceBroadcaster,
+                             QuoteCache quoteCache,
+                             QuoteDemand quoteDemand,
+                             MarketDataProvider provider,
+                             StockRepository stockRepository,
+                             MarkToMarket markToMarket,
+                             PnlEngine pnlEngine,
+                             @Value("${market.refresh.min-age-ms:60000}") long minAgeMillis) {
+        this.priceBroadcaster = priceBroadcaster;
+        this.quoteCache = quoteCache;
+        this.quoteDemand = quoteDemand;
+        this.provider = provider;
+        this.stockRepository = stockRepository;
+        this.markToMarket = markToMarket;
+        this.pnlEngine = pnlEngine;
+        this.minAgeMillis = minAgeMillis;
     }
 
-    @Scheduled(fixedRate = 60000)
+    @Scheduled(fixedDelayString = "${market.refresh.interval-ms:5000}")
     public void fetchAndBroadcast() {
-        for (String symbol : symbols) {
+        for (String symbol : due()) {
+            if (provider.availableCalls() == 0) break;
             try {
-                String url = apiUrl + "?function=GLOBAL_QUOTE&symbol=" + symbol + "&apikey=" + apiKey;
-                Map response = restTemplate.getForObject(url, Map.class);
-                Map quote = (Map) response.get("Global Quote");
-                if (quote != null && quote.get("05. price") != null) {
-                    double price = Double.parseDouble(quote.get("05. price").toString());
-                    MarketQuote marketQuote = new MarketQuote(symbol, price, Instant.now());
-                    messagingTemplate.convertAndSend("/topic/prices/" + symbol, marketQuote);
-                }
+                // Refreshes the shared cache too, joining any load already in flight
+                BigDecimal price = quoteCache.refresh(symbol);
+                if (price != null) broadcast(symbol, price);
             } catch (Exception e) {
-                // log error
+                logger.warn("Refresh of {} failed", symbol, e);
             }
         }
     }
-}
\ No newline at end of file
+
+    /** Hooks up a streaming provider's ticks once the app is ready to serve them. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startStreaming() {
+        provider.stream(this::publish);
+    }
+
+    /** A pushed tick: cached, then broadcast and valued like a refreshed quote. */
+    public void publish(String symbol, BigDecimal price) {
+        quoteCache.accept(symbol, price);
+        broadcast(symbol, price);
+    }
+
+    private void broadcast(String symbol, BigDecimal price) {
+        priceBroadcaster.offer(symbol, price);
+        markToMarket.onTick(symbol, price);
+        pnlEngine.onTick(symbol);
+    }
+
+    private record Candidate(String symbol, double priority, long age) { }
+
+    /** Symbols whose quotes are old enough to refresh, most wanted first. */
+    private List<String> due() {
+        Set<String> universe = new LinkedHashSet<>();
+        stockRepository.findAll().forEach(stock -> universe.add(stock.getSymbol()));
+        universe.addAll(quoteDemand.subscribedSymbols());
+        return universe.stream()
+            .map(symbol -> new Candidate(symbol, quoteDemand.priority(symbol), quoteCache.ageMillis(symbol)))
+            .filter(candidate -> candidate.age() >= minAgeMillis)
+            .sorted(Comparator.comparingDouble(Candidate::priority)
+                .thenComparingLong(Candidate::age).reversed())
+            .map(Candidate::symbol)
+            .toList();
+    }
+}
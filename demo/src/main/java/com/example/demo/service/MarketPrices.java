@@ -0,0 +1,40 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Latest known price per symbol, as delivered by market data ticks. Symbols
+ * that have not ticked yet fall back to a fixed reference price, which is also
+ * what the app shows when the quote API is unavailable.
+ */
+@Service
+public class MarketPrices {
+    private static final BigDecimal DEFAULT_PRICE = new BigDecimal("100.00");
+    private static final Map<String, BigDecimal> REFERENCE = Map.of(
+        "AAPL", new BigDecimal("213.88"),
+        "GOOG", new BigDecimal("194.08"),
+        "MSFT", new BigDecimal("415.22"),
+        "TSLA", new BigDecimal("248.50"),
+        "AMZN", new BigDecimal("178.12"));
+
+    private final ConcurrentHashMap<String, BigDecimal> latest = new ConcurrentHashMap<>();
+
+    public BigDecimal price(String symbol) {
+        BigDecimal price = latest.get(symbol);
+        return price != null ? price : referencePrice(symbol);
+    }
+
+    /** Records a tick and returns the price it replaces. */
+    public BigDecimal update(String symbol, BigDecimal price) {
+        BigDecimal previous = latest.put(symbol, price);
+        return previous != null ? previous : referencePrice(symbol);
+    }
+
+    public static BigDecimal referencePrice(String symbol) {
+        return REFERENCE.getOrDefault(symbol.toUpperCase(), DEFAULT_PRICE);
+    }
+}
@@ -1,28 +1,103 @@
 package com.example.demo.service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
-import software.amazon.awssdk.services.cloudwatch.model.*;
 
+/**
+ * In-process metric aggregation. Counters are {@link LongAdder}s and gauges
+ * are sampled suppliers, so recording never blocks or does I/O; a background
+ * thread flushes everything to the {@link MetricsSink} once per interval.
+ * Counters report their sum over the interval and are reset by the flush.
+ */
 @Service
-public class MetricsService {
+public class MetricsService implements SmartLifecycle {
     private static final Logger logger = LoggerFactory.getLogger(MetricsService.class);
-    private final CloudWatchClient cloudWatch = CloudWatchClient.create();
 
+    private record Gauge(String unit, DoubleSupplier value) { }
+
+    private final MetricsSink sink;
+    private final long flushIntervalMillis;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public MetricsService(MetricsSink sink,
+                          @Value("${metrics.flush-interval-ms:60000}") long flushIntervalMillis) {
+        this.sink = sink;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /** Counts accepted orders; flushed as OrdersPerMinute at the default one-minute interval. */
     public void publishOrderRate(int count) {
-        logger.info("Publishing OrdersPerMinute metric to CloudWatch: {}", count);
-        PutMetricDataRequest request = PutMetricDataRequest.builder()
-            .namespace("StockSimulator")
-            .metricData(MetricDatum.builder()
-                .metricName("OrdersPerMinute")
-                .unit(StandardUnit.COUNT)
-                .value((double) count)
-                .dimensions(Dimension.builder().name("Application").value("StockSimulator").build())
-                .build())
-            .build();
-        cloudWatch.putMetricData(request);
-        logger.info("Published OrdersPerMinute metric to CloudWatch.");
+        increment("OrdersPerMinute", count);
+    }
+
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    /** Registers a value that is sampled at every flush. Registering a name again replaces it. */
+    public void gauge(String name, String unit, DoubleSupplier value) {
+        gauges.put(name, new Gauge(unit, value));
+    }
+
+    /** Sends every counter's interval sum and every gauge's current value to the sink. */
+    public void flush() {
+        Instant now = Instant.now();
+        List<MetricsSink.Datum> datums = new ArrayList<>(counters.size() + gauges.size());
+        counters.forEach((name, adder) -> datums.add(new MetricsSink.Datum(name, "Count", adder.sumThenReset(), now)));
+        gauges.forEach((name, gauge) -> datums.add(new MetricsSink.Datum(name, gauge.unit(), gauge.value().getAsDouble(), now)));
+        if (datums.isEmpty()) return;
+        try {
+            sink.publish(datums);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to publish {} metrics: {}", datums.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (flusher != null) return;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Flushes whatever the last partial interval collected. */
+    @Override
+    public synchronized void stop() {
+        if (flusher == null) return;
+        flusher.shutdownNow();
+        flusher = null;
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+
+    /** Stops after the order pipeline and trade writer, so their last counts are included. */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2;
     }
 }
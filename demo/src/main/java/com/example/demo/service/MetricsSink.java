@@ -0,0 +1,18 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Where {@link MetricsService} sends aggregated metrics. The default sink is
+ * CloudWatch; {@code metrics.sink=log} swaps in a local stand-in for tests
+ * and offline runs.
+ */
+public interface MetricsSink {
+
+    /** One aggregated value. {@code unit} is a CloudWatch unit name such as "Count". */
+    record Datum(String name, String unit, double value, Instant timestamp) { }
+
+    /** Called from the metrics flush thread, never from request or matching threads. */
+    void publish(List<Datum> datums);
+}
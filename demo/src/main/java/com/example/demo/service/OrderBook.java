@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+/**
+ * Price-time priority ladder for a single symbol. Prices are integer ticks
+ * (see {@link Ticks}); each level is a FIFO queue, so equal-priced orders
+ * fill in arrival order and a partial fill just decrements the head in place.
+ * Orders, prices and symbols are all primitives, and resting orders come from
+ * the lane's {@link OrderPool}, so matching allocates nothing once warm.
+ * Resting orders are registered in the lane's {@link OrderIndex} so cancels
+ * and amends reach them in O(1).
+ *
+ * Not thread-safe: every book is owned by exactly one matching lane in
+ * {@link OrderMatchingService}, which is the only writer.
+ */
+public class OrderBook {
+
+    /** Receives each fill as it happens. Implementations must not retain the book's nodes. */
+    public interface FillHandler {
+        void onFill(int symbolId, long takerOrderId, long makerOrderId, boolean takerBuy,
+                    long takerPortfolioId, long makerPortfolioId, long price, int quantity);
+    }
+
+    private final int symbolId;
+    private final OrderPool pool;
+    private final OrderIndex index;
+    private final BookSide bids = new BookSide(true);
+    private final BookSide asks = new BookSide(false);
+    private long version;
+
+    public OrderBook(int symbolId, OrderPool pool, OrderIndex index) {
+        this.symbolId = symbolId;
+        this.pool = pool;
+        this.index = index;
+    }
+
+    public int getSymbolId() { return symbolId; }
+    public BookSide getBids() { return bids; }
+    public BookSide getAsks() { return asks; }
+
+    /** Bumped by every match, cancel and amend, so readers can tell whether the book moved. */
+    public long getVersion() { return version; }
+
+    /**
+     * Matches an incoming limit order against the opposite side and rests any
+     * remainder. Returns the quantity left resting (0 if fully filled).
+     */
+    public int match(long orderId, long portfolioId, boolean buy, long price, int quantity, FillHandler handler) {
+        BookSide opposite = buy ? asks : bids;
+        while (quantity > 0 && opposite.crosses(price)) {
+            PriceLevel level = opposite.best();
+            OrderNode best = level.head();
+            int qty = Math.min(quantity, best.quantity);
+            handler.onFill(symbolId, orderId, best.orderId, buy, portfolioId, best.portfolioId, level.getPrice(), qty);
+
+            quantity -= qty;
+            if (level.fill(best, qty)) {
+                index.remove(best.orderId);
+                pool.release(best);
+            }
+            if (level.isEmpty()) opposite.removeBest();
+        }
+        if (quantity > 0) {
+            OrderNode node = pool.acquire();
+            node.orderId = orderId;
+            node.symbolId = symbolId;
+            node.portfolioId = portfolioId;
+            node.buy = buy;
+            node.price = price;
+            node.quantity = quantity;
+            (buy ? bids : asks).levelFor(price).append(node);
+            index.put(orderId, node);
+        }
+        version++;
+        return quantity;
+    }
+
+    /** Removes a resting order from its level and recycles it. */
+    public void cancel(OrderNode node) {
+        PriceLevel level = node.level;
+        level.unlink(node);
+        if (level.isEmpty()) (node.buy ? bids : asks).remove(level);
+        index.remove(node.orderId);
+        pool.release(node);
+        version++;
+    }
+
+    /** Reduces a resting order in place; it keeps its time priority. */
+    public void reduce(OrderNode node, int newQuantity) {
+        if (newQuantity <= 0 || newQuantity >= node.quantity) {
+            throw new IllegalArgumentException("Amend must reduce quantity: " + node.quantity + " -> " + newQuantity);
+        }
+        node.level.reduce(node, newQuantity);
+        version++;
+    }
+
+    /** Best bid in ticks, or {@link Long#MIN_VALUE} when there are no bids. */
+    public long bestBid() {
+        PriceLevel best = bids.best();
+        return best == null ? Long.MIN_VALUE : best.getPrice();
+    }
+
+    /** Best ask in ticks, or {@link Long#MAX_VALUE} when there are no asks. */
+    public long bestAsk() {
+        PriceLevel best = asks.best();
+        return best == null ? Long.MAX_VALUE : best.getPrice();
+    }
+
+    public long restingQuantity(boolean buy) {
+        return (buy ? bids : asks).totalQuantity();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+/**
+ * Order id to resting {@link OrderNode} lookup for one matching lane, so a
+ * cancel or amend finds its node in O(1) instead of scanning the book.
+ * Open addressing over primitive keys with backward-shift deletion: no boxing
+ * and no tombstones, so heavy cancel traffic does not degrade probe lengths.
+ */
+public final class OrderIndex {
+    private long[] keys;
+    private OrderNode[] values;
+    private int mask;
+    private int size;
+
+    public OrderIndex(int expectedOrders) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedOrders * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new OrderNode[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() { return size; }
+
+    public OrderNode get(long orderId) {
+        for (int i = slot(orderId); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == orderId) return values[i];
+        }
+        return null;
+    }
+
+    void put(long orderId, OrderNode node) {
+        if ((size + 1) * 2 > keys.length) resize();
+        int i = slot(orderId);
+        while (values[i] != null) {
+            if (keys[i] == orderId) {
+                values[i] = node;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = orderId;
+        values[i] = node;
+        size++;
+    }
+
+    void remove(long orderId) {
+        int i = slot(orderId);
+        while (values[i] != null && keys[i] != orderId) i = (i + 1) & mask;
+        if (values[i] == null) return;
+        size--;
+        // Pull later entries of the same probe run back into the hole
+        int hole = i;
+        for (int j = (hole + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = null;
+    }
+
+    private int slot(long orderId) {
+        long h = orderId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        OrderNode[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new OrderNode[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) put(oldKeys[i], oldValues[i]);
+        }
+        Arrays.fill(oldValues, null);
+    }
+}
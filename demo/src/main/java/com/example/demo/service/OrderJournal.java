@@ -0,0 +1,311 @@
+package com.example.demo.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Append-only binary log of everything that changes an order book: new
+ * orders, cancels and amends as they leave the sequencer, plus fills for
+ * audit. Matching is deterministic, so replaying the order records through an
+ * empty {@link OrderMatchingService} rebuilds every book exactly; fill records
+ * are skipped on replay.
+ *
+ * The log is a series of fixed-size segment files written through a
+ * memory-mapped buffer. Each record is {@code [int length][byte type][payload]}
+ * and the length is written last, so a record torn by a crash reads as the end
+ * of the log. {@link #commit()} forces the mapped pages to disk; the order
+ * pipeline calls it once per batch, which makes it a group commit.
+ *
+ * A {@link #position()} names a point in the log; replay can start from one,
+ * which is how a {@link SnapshotStore} snapshot skips everything before it.
+ *
+ * With no directory configured the journal is disabled and every call is a no-op.
+ */
+@Service
+public class OrderJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    private static final int MAGIC = 0x4F4A524E; // "OJRN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+
+    static final byte NEW_ORDER = 1;
+    static final byte CANCEL_ORDER = 2;
+    static final byte AMEND_ORDER = 3;
+    static final byte FILL = 4;
+
+    /** Symbols are stored as UTF-8 with a one-byte length. */
+    public static final int MAX_SYMBOL_BYTES = 255;
+
+    /** Whether {@code symbol} fits a journal record, at most {@value #MAX_SYMBOL_BYTES} bytes of UTF-8. */
+    public static boolean symbolFits(String symbol) {
+        return symbol.getBytes(StandardCharsets.UTF_8).length <= MAX_SYMBOL_BYTES;
+    }
+
+    /** Receives journal records in the order they were written. */
+    public interface Visitor {
+        void onNewOrder(long orderId, int symbolId, String symbol, long portfolioId,
+                        boolean buy, long price, int quantity);
+        void onCancel(long orderId, long portfolioId);
+        void onAmend(long orderId, long portfolioId, int quantity);
+        default void onFill(long takerOrderId, long makerOrderId, long price, int quantity) { }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean fsync;
+
+    private int segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
+
+    @Autowired
+    public OrderJournal(@Value("${orders.journal.dir:}") String dir,
+                        @Value("${orders.journal.segment-size-mb:64}") int segmentSizeMb,
+                        @Value("${orders.journal.fsync:true}") boolean fsync) throws IOException {
+        this(dir.isBlank() ? null : Path.of(dir), segmentSizeMb << 20, fsync);
+    }
+
+    public OrderJournal(Path dir, int segmentBytes, boolean fsync) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        if (dir == null) return;
+        Files.createDirectories(dir);
+        List<Path> segments = segments();
+        // Leading segments may have been compacted away, so the newest one's name, not the count, gives its index
+        segmentIndex = segments.isEmpty() ? 0 : indexOf(segments.get(segments.size() - 1));
+        openSegment(segmentIndex);
+        buffer.position(endOfRecords(buffer));
+    }
+
+    public static OrderJournal disabled() {
+        try {
+            return new OrderJournal((Path) null, 0, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    public synchronized void appendNewOrder(long orderId, int symbolId, String symbol, long portfolioId,
+                                            boolean buy, long price, int quantity) {
+        if (dir == null) return;
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (symbolBytes.length > MAX_SYMBOL_BYTES) {
+            throw new IllegalArgumentException("Symbol longer than " + MAX_SYMBOL_BYTES + " bytes: " + symbol);
+        }
+        int start = reserve(5 + 8 + 4 + 8 + 8 + 4 + 1 + 1 + symbolBytes.length, NEW_ORDER);
+        buffer.putLong(orderId).putInt(symbolId).putLong(portfolioId).putLong(price).putInt(quantity)
+            .put((byte) (buy ? 1 : 0)).put((byte) symbolBytes.length).put(symbolBytes);
+        seal(start);
+    }
+
+    public synchronized void appendCancel(long orderId, long portfolioId) {
+        if (dir == null) return;
+        int start = reserve(5 + 8 + 8, CANCEL_ORDER);
+        buffer.putLong(orderId).putLong(portfolioId);
+        seal(start);
+    }
+
+    public synchronized void appendAmend(long orderId, long portfolioId, int quantity) {
+        if (dir == null) return;
+        int start = reserve(5 + 8 + 8 + 4, AMEND_ORDER);
+        buffer.putLong(orderId).putLong(portfolioId).putInt(quantity);
+        seal(start);
+    }
+
+    public synchronized void appendFill(long takerOrderId, long makerOrderId, long price, int quantity) {
+        if (dir == null) return;
+        int start = reserve(5 + 8 + 8 + 8 + 4, FILL);
+        buffer.putLong(takerOrderId).putLong(makerOrderId).putLong(price).putInt(quantity);
+        seal(start);
+    }
+
+    /**
+     * Where the next record will go: segment index in the high 32 bits, byte
+     * offset in the low 32. Positions only increase.
+     */
+    public synchronized long position() {
+        if (dir == null) return 0;
+        return ((long) segmentIndex << 32) | buffer.position();
+    }
+
+    /** Forces everything appended since the last commit to disk. */
+    public synchronized void commit() {
+        if (dir == null || !dirty) return;
+        if (fsync) buffer.force();
+        dirty = false;
+    }
+
+    /** Reads every record from the first segment on. */
+    public long replay(Visitor visitor) throws IOException {
+        return replay(0, visitor);
+    }
+
+    /**
+     * Reads every record at or after {@code from}, a value previously returned
+     * by {@link #position()}. Call before appending anything new. Returns the
+     * number of records visited.
+     */
+    public long replay(long from, Visitor visitor) throws IOException {
+        if (dir == null) return 0;
+        int fromSegment = (int) (from >>> 32);
+        long count = 0;
+        for (Path segment : segments()) {
+            int index = indexOf(segment);
+            if (index < fromSegment) continue;
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                checkHeader(in, segment);
+                int offset = index == fromSegment ? Math.max(HEADER_BYTES, (int) from) : HEADER_BYTES;
+                count += replaySegment(in, offset, visitor);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Deletes segments that lie wholly before {@code position}; nothing there
+     * is needed once a snapshot covers it. The segment being written is never
+     * deleted.
+     */
+    public synchronized void deleteSegmentsBefore(long position) throws IOException {
+        if (dir == null) return;
+        int keepFrom = Math.min(segmentIndex, (int) (position >>> 32));
+        for (Path segment : segments()) {
+            if (indexOf(segment) < keepFrom) Files.delete(segment);
+        }
+    }
+
+    private long replaySegment(MappedByteBuffer in, int pos, Visitor visitor) {
+        long count = 0;
+        while (pos + 4 <= in.limit()) {
+            int length = in.getInt(pos);
+            if (length == 0) break;
+            in.position(pos + 4);
+            byte type = in.get();
+            switch (type) {
+                case NEW_ORDER -> {
+                    long orderId = in.getLong();
+                    int symbolId = in.getInt();
+                    long portfolioId = in.getLong();
+                    long price = in.getLong();
+                    int quantity = in.getInt();
+                    boolean buy = in.get() == 1;
+                    byte[] symbol = new byte[in.get() & 0xFF];
+                    in.get(symbol);
+                    visitor.onNewOrder(orderId, symbolId, new String(symbol, StandardCharsets.UTF_8),
+                        portfolioId, buy, price, quantity);
+                }
+                case CANCEL_ORDER -> visitor.onCancel(in.getLong(), in.getLong());
+                case AMEND_ORDER -> visitor.onAmend(in.getLong(), in.getLong(), in.getInt());
+                case FILL -> visitor.onFill(in.getLong(), in.getLong(), in.getLong(), in.getInt());
+                default -> throw new IllegalStateException("Corrupt journal record type " + type + " at " + pos);
+            }
+            pos += length;
+            count++;
+        }
+        return count;
+    }
+
+    /** Moves to a fresh segment if this record will not fit, then writes its type byte. */
+    private int reserve(int length, byte type) {
+        if (buffer.remaining() < length + 4) roll();
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(type);
+        return start;
+    }
+
+    /** Publishes the record by writing its length over the placeholder. */
+    private void seal(int start) {
+        buffer.putInt(start, buffer.position() - start);
+        dirty = true;
+    }
+
+    private void roll() {
+        try {
+            if (fsync) buffer.force();
+            channel.close();
+            openSegment(++segmentIndex);
+            buffer.position(HEADER_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll order journal in " + dir, e);
+        }
+    }
+
+    private void openSegment(int index) throws IOException {
+        Path path = dir.resolve(String.format("orders-%05d.journal", index));
+        boolean created = !Files.exists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, channel.size()));
+        if (created) {
+            buffer.putInt(0, MAGIC).putInt(4, VERSION);
+        } else {
+            checkHeader(buffer, path);
+        }
+    }
+
+    private static int endOfRecords(MappedByteBuffer in) {
+        int pos = HEADER_BYTES;
+        while (pos + 4 <= in.limit()) {
+            int length = in.getInt(pos);
+            if (length == 0) break;
+            pos += length;
+        }
+        return pos;
+    }
+
+    private static void checkHeader(MappedByteBuffer in, Path segment) {
+        if (in.getInt(0) != MAGIC || in.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not an order journal segment: " + segment);
+        }
+    }
+
+    private static int indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring("orders-".length(), name.length() - ".journal".length()));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return new ArrayList<>(files
+                .filter(p -> p.getFileName().toString().matches("orders-\\d{5}\\.journal"))
+                .sorted()
+                .toList());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dir == null || channel == null) return;
+        try {
+            if (fsync) buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close order journal in {}", dir, e);
+        }
+        channel = null;
+    }
+}
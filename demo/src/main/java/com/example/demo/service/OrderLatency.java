@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Latency of each step an order goes through, recorded twice: into a
+ * Micrometer timer ({@code orders.latency}, tagged by stage, with published
+ * percentiles) for the metrics endpoint and any registry behind it, and into
+ * an HdrHistogram {@link Recorder} for the {@code orderlatency} actuator
+ * endpoint, which shows exact percentiles since its last reset.
+ *
+ * Both recorders are wait-free for writers, so stage threads can record
+ * every event.
+ */
+@Service
+public class OrderLatency {
+
+    public enum Stage {
+        /** Time spent in an OrderController handler that feeds the order pipeline. */
+        HTTP("http"),
+        /**
+         * Time spent in the legacy instant-fill POST /api/orders handler, which
+         * writes to the database before returning; kept apart so it does not
+         * skew the pipeline's HTTP percentiles.
+         */
+        HTTP_INSTANT_FILL("http.instant-fill"),
+        /** From a producer publishing to the ring until a matcher picks the order up. */
+        QUEUE("queue"),
+        /** Journal append, plus the group commit on the last event of a batch. */
+        JOURNAL("journal"),
+        MATCH("match"),
+        /** Handing fills to the trade writer, including any backpressure wait. */
+        PERSIST("persist"),
+        /** One JDBC batch write of fills and value snapshots. */
+        DB_WRITE("db.write"),
+        /** Sending the order update to WebSocket subscribers. */
+        PUBLISH("publish");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() { return tag; }
+    }
+
+    private static final class StageRecorder {
+        final Timer timer;
+        final Recorder recorder = new Recorder(3);
+        final Histogram interval = new Histogram(3);
+        Histogram scratch;
+
+        StageRecorder(Timer timer) {
+            this.timer = timer;
+        }
+    }
+
+    private final Map<Stage, StageRecorder> stages = new EnumMap<>(Stage.class);
+
+    public OrderLatency(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            Timer timer = Timer.builder("orders.latency")
+                .description("Latency of one stage of order handling")
+                .tag("stage", stage.tag())
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .register(registry);
+            stages.put(stage, new StageRecorder(timer));
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        StageRecorder recorder = stages.get(stage);
+        recorder.timer.record(nanos, TimeUnit.NANOSECONDS);
+        recorder.recorder.recordValue(Math.max(0, nanos));
+    }
+
+    /** Records the time since {@code startNanos}, a {@link System#nanoTime()} reading. */
+    public void recordSince(Stage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Percentiles per stage, in microseconds, over everything recorded since
+     * the last {@link #reset()}.
+     */
+    public synchronized Map<String, Map<String, Object>> intervalSummary() {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        for (Map.Entry<Stage, StageRecorder> entry : stages.entrySet()) {
+            StageRecorder stage = entry.getValue();
+            stage.scratch = stage.recorder.getIntervalHistogram(stage.scratch);
+            stage.interval.add(stage.scratch);
+            Histogram h = stage.interval;
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", h.getTotalCount());
+            values.put("p50", micros(h.getValueAtPercentile(50)));
+            values.put("p90", micros(h.getValueAtPercentile(90)));
+            values.put("p99", micros(h.getValueAtPercentile(99)));
+            values.put("p999", micros(h.getValueAtPercentile(99.9)));
+            values.put("max", micros(h.getMaxValue()));
+            summary.put(entry.getKey().tag(), values);
+        }
+        return summary;
+    }
+
+    /** Starts a new interval; the Micrometer timers are unaffected. */
+    public synchronized void reset() {
+        for (StageRecorder stage : stages.values()) {
+            stage.scratch = stage.recorder.getIntervalHistogram(stage.scratch);
+            stage.interval.reset();
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1_000.0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.service;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/orderlatency} shows per-stage percentiles since the
+ * last reset; {@code DELETE /actuator/orderlatency} starts a new interval.
+ */
+@Component
+@Endpoint(id = "orderlatency")
+public class OrderLatencyEndpoint {
+    private final OrderLatency latency;
+
+    public OrderLatencyEndpoint(OrderLatency latency) {
+        this.latency = latency;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> interval() {
+        return latency.intervalSummary();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        latency.reset();
+    }
+}
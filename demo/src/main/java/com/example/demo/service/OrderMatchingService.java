@@ -1,18 +1,21 @@
 package com.example.demo.service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.stereotype.Service;
 
-import com.example.demo.entity.PortfolioValueHistory;
+import com.example.demo.dto.OrderBookDepth;
 import com.example.demo.entity.TradeType;
-import com.example.demo.entity.Transaction;
-import com.example.demo.repository.PortfolioRepository;
-import com.example.demo.repository.PortfolioValueHistoryRepository;
-import com.example.demo.repository.TransactionRepository;
 
 @Service
 public class OrderMatchingService {
@@ -24,6 +27,7 @@ public class OrderMatchingService {
         private final Side side;
         private int quantity;
         private final BigDecimal price;
+        private long orderId;
 
         public Order(long portfolioId, String symbol, Side side, int quantity, BigDecimal price) {
             this.portfolioId = portfolioId;
@@ -39,88 +43,310 @@ public class OrderMatchingService {
         public int getQuantity() { return quantity; }
         public void setQuantity(int quantity) { this.quantity = quantity; }
         public BigDecimal getPrice() { return price; }
+        public long getOrderId() { return orderId; }
     }
 
-    private final PriorityQueue<Order> buyBook =
-        new PriorityQueue<>(Comparator.comparing(Order::getPrice).reversed());
-    private final PriorityQueue<Order> sellBook =
-        new PriorityQueue<>(Comparator.comparing(Order::getPrice));
+    /**
+     * A matching lane owns the books of every symbol whose id maps to it and is
+     * the only thread allowed to mutate them at a time. Symbols on different
+     * lanes match in parallel; each symbol still has its own {@link OrderBook},
+     * so books on the same lane never see each other's orders.
+     */
+    private static final class MatchingLane {
+        private final OrderPool pool = new OrderPool(1024);
+        private final OrderIndex index = new OrderIndex(1024);
+        /** Reused by {@link #placeOrder}; only touched under the lane's lock. */
+        private final FillBuffer fills = new FillBuffer();
+    }
+
+    /** Low bits of an order id hold the low bits of its symbol id; also caps the lane count. */
+    private static final int SYMBOL_BITS = 8;
+
+    private final SymbolTable symbols = new SymbolTable();
+    private final MatchingLane[] lanes = newLanes(Runtime.getRuntime().availableProcessors());
+    private final AtomicLong orderIds = new AtomicLong();
+    private volatile OrderBook[] books = new OrderBook[64];
 
-    private final TransactionRepository txnRepo;
-    private final PortfolioRepository portfolioRepo;
     private final MetricsService metricsService;
-    private final PortfolioValueHistoryRepository valueHistoryRepo;
-
-    public OrderMatchingService(TransactionRepository txnRepo,
-                                PortfolioRepository portfolioRepo,
-                                MetricsService metricsService,
-                                PortfolioValueHistoryRepository valueHistoryRepo) {
-        this.txnRepo = txnRepo;
-        this.portfolioRepo = portfolioRepo;
+    private final TradeWriter tradeWriter;
+
+    public OrderMatchingService(MetricsService metricsService, TradeWriter tradeWriter) {
         this.metricsService = metricsService;
-        this.valueHistoryRepo = valueHistoryRepo;
-    }
-
-    public synchronized void placeOrder(Order order) {
-        PriorityQueue<Order> opposite = (order.getSide() == Order.Side.BUY) ? sellBook : buyBook;
-        while (order.getQuantity() > 0 && !opposite.isEmpty()) {
-            Order best = opposite.peek();
-            boolean match = (order.getSide() == Order.Side.BUY)
-                ? best.getPrice().compareTo(order.getPrice()) <= 0
-                : best.getPrice().compareTo(order.getPrice()) >= 0;
-            if (!match) break;
-
-            int qty = Math.min(order.getQuantity(), best.getQuantity());
-            BigDecimal tradePrice = best.getPrice();
-            executeTrade(order, best, qty, tradePrice);
-
-            order.setQuantity(order.getQuantity() - qty);
-            best.setQuantity(best.getQuantity() - qty);
-            opposite.poll();
-            if (best.getQuantity() > 0) opposite.add(best);
-        }
-        if (order.getQuantity() > 0) {
-            if (order.getSide() == Order.Side.BUY) buyBook.add(order);
-            else sellBook.add(order);
+        this.tradeWriter = tradeWriter;
+    }
+
+    /**
+     * Matches an order on the caller's thread and hands its fills to the
+     * {@link TradeWriter} before returning. Request traffic goes through
+     * {@link OrderPipeline} instead; this path is for in-process callers that
+     * want the match result synchronously.
+     */
+    public void placeOrder(Order order) {
+        int symbolId = symbols.intern(order.getSymbol());
+        boolean buy = order.getSide() == Order.Side.BUY;
+        order.orderId = nextOrderId(symbolId);
+        OrderBook book = book(symbolId);
+        MatchingLane lane = laneFor(symbolId);
+        int remaining;
+        List<TradeWriter.TradeFill> trades;
+        synchronized (lane) {
+            lane.fills.clear();
+            remaining = book.match(order.orderId, order.getPortfolioId(), buy,
+                Ticks.toTicks(order.getPrice(), buy), order.getQuantity(), lane.fills);
+            trades = tradeFills(lane.fills);
         }
+        order.setQuantity(remaining);
+        // Outside the lane lock: a full write-behind queue must not stall matching
+        trades.forEach(tradeWriter::submit);
         metricsService.publishOrderRate(1);
     }
 
-    private void executeTrade(Order incoming, Order bookOrder, int qty, BigDecimal price) {
-        // Persist one side of the trade (you could persist both if desired)
-        Transaction t = new Transaction();
-        var portfolio = portfolioRepo.findById(incoming.getPortfolioId()).orElseThrow();
-        t.setPortfolio(portfolio);
-        t.setStockSymbol(incoming.getSymbol());
-        t.setQuantity(qty);
-        t.setPrice(price);
-        t.setType(incoming.getSide() == Order.Side.BUY ? TradeType.BUY : TradeType.SELL);
-        txnRepo.save(t);
-        // After saving the transaction, calculate and record portfolio value
-        BigDecimal totalValue = calculatePortfolioValue(portfolio.getId());
-        PortfolioValueHistory snapshot = new PortfolioValueHistory(portfolio, Instant.now(), totalValue);
-        valueHistoryRepo.save(snapshot);
-    }
-
-    private BigDecimal calculatePortfolioValue(Long portfolioId) {
-        // Simple sum of (shares * last price) for each stock in the portfolio
-        var txns = txnRepo.findByPortfolioId(portfolioId);
-        java.util.Map<String, Integer> holdings = new java.util.HashMap<>();
-        java.util.Map<String, BigDecimal> lastPrice = new java.util.HashMap<>();
-        for (var txn : txns) {
-            String symbol = txn.getStockSymbol();
-            int qty = txn.getType() == TradeType.BUY ? txn.getQuantity() : -txn.getQuantity();
-            holdings.put(symbol, holdings.getOrDefault(symbol, 0) + qty);
-            lastPrice.put(symbol, txn.getPrice());
+    /**
+     * Runs one order through its symbol's book under the owning lane's lock and
+     * records fills into {@code fills}. Nothing here touches the database, so
+     * the lane is held only for the in-memory match.
+     */
+    public int match(long orderId, int symbolId, long portfolioId, boolean buy, long price, int quantity,
+                     OrderBook.FillHandler fills) {
+        OrderBook book = book(symbolId);
+        synchronized (laneFor(symbolId)) {
+            return book.match(orderId, portfolioId, buy, price, quantity, fills);
+        }
+    }
+
+    /**
+     * Order ids carry the low bits of their symbol id, which determine the
+     * lane, so a cancel or amend can go straight to the owning lane's index
+     * without knowing the symbol. Using symbol bits rather than the lane itself
+     * keeps journaled ids valid when a restart comes up with a different lane
+     * count.
+     */
+    public long nextOrderId(int symbolId) {
+        return (orderIds.incrementAndGet() << SYMBOL_BITS) | (symbolId & ((1 << SYMBOL_BITS) - 1));
+    }
+
+    /** Makes sure ids handed out from now on sort after {@code orderId}; used by journal replay. */
+    public void advanceOrderIds(long orderId) {
+        orderIds.accumulateAndGet(orderId >>> SYMBOL_BITS, Math::max);
+    }
+
+    /** An id at least as high as any handed out so far; the counterpart of {@link #advanceOrderIds}. */
+    public long orderIdWatermark() {
+        return orderIds.get() << SYMBOL_BITS;
+    }
+
+    /**
+     * Serializes every book on one lane, holding that lane's lock. Called from
+     * the lane's own match stage, so only this lane pauses while it is copied.
+     * Per book: the symbol id, then each side as its levels from the touch
+     * outwards, each level as its price and its orders in queue order.
+     */
+    public byte[] snapshotLane(int lane) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            synchronized (lanes[lane]) {
+                OrderBook[] current = books;
+                int count = 0;
+                for (int id = lane; id < current.length; id += lanes.length) {
+                    if (current[id] != null) count++;
+                }
+                out.writeInt(count);
+                for (int id = lane; id < current.length; id += lanes.length) {
+                    if (current[id] == null) continue;
+                    out.writeInt(id);
+                    writeSide(out, current[id].getBids());
+                    writeSide(out, current[id].getAsks());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeSide(DataOutputStream out, BookSide side) throws IOException {
+        out.writeInt(side.levelCount());
+        for (int depth = 0; depth < side.levelCount(); depth++) {
+            PriceLevel level = side.levelAt(depth);
+            out.writeLong(level.getPrice());
+            out.writeInt(level.getOrderCount());
+            for (OrderNode node = level.head(); node != null; node = node.next) {
+                out.writeLong(node.orderId);
+                out.writeLong(node.portfolioId);
+                out.writeInt(node.quantity);
+            }
+        }
+    }
+
+    /** Rests the orders written by {@link #snapshotLane} back into their books, in queue order. */
+    public void restoreLane(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int b = 0; b < count; b++) {
+            int symbolId = in.readInt();
+            readSide(in, symbolId, true);
+            readSide(in, symbolId, false);
+        }
+    }
+
+    private void readSide(DataInputStream in, int symbolId, boolean buy) throws IOException {
+        int levels = in.readInt();
+        for (int l = 0; l < levels; l++) {
+            long price = in.readLong();
+            int orders = in.readInt();
+            for (int o = 0; o < orders; o++) {
+                match(in.readLong(), symbolId, in.readLong(), buy, price, in.readInt(), CROSSED_SNAPSHOT);
+            }
+        }
+    }
+
+    private static final OrderBook.FillHandler CROSSED_SNAPSHOT = (symbolId, taker, maker, takerBuy,
+            takerPortfolio, makerPortfolio, price, quantity) -> {
+        throw new IllegalStateException("Snapshot book for symbol " + symbolId + " is crossed at " + price);
+    };
+
+    /**
+     * Cancels a resting order owned by {@code portfolioId}. Returns the quantity
+     * that was still open, or 0 if the order is unknown, already filled, or
+     * belongs to another portfolio.
+     */
+    public int cancelOrder(long orderId, long portfolioId) {
+        MatchingLane lane = lanes[laneOfOrder(orderId)];
+        synchronized (lane) {
+            OrderNode node = lane.index.get(orderId);
+            if (node == null || node.portfolioId != portfolioId) return 0;
+            int open = node.quantity;
+            book(node.symbolId).cancel(node);
+            return open;
         }
-        BigDecimal total = BigDecimal.ZERO;
-        for (var entry : holdings.entrySet()) {
-            int shares = entry.getValue();
-            if (shares > 0) {
-                BigDecimal price = lastPrice.get(entry.getKey());
-                total = total.add(price.multiply(BigDecimal.valueOf(shares)));
+    }
+
+    /**
+     * Lowers the open quantity of a resting order without losing its place in
+     * the queue. Increases are rejected; they need a cancel and a new order.
+     */
+    public boolean amendOrder(long orderId, long portfolioId, int newQuantity) {
+        MatchingLane lane = lanes[laneOfOrder(orderId)];
+        synchronized (lane) {
+            OrderNode node = lane.index.get(orderId);
+            if (node == null || node.portfolioId != portfolioId
+                    || newQuantity <= 0 || newQuantity >= node.quantity) {
+                return false;
             }
+            book(node.symbolId).reduce(node, newQuantity);
+            return true;
+        }
+    }
+
+    /** Queues the taker side of each fill for write-behind persistence; never waits on the database. */
+    public void persistFills(FillBuffer fills) {
+        tradeFills(fills).forEach(tradeWriter::submit);
+    }
+
+    private List<TradeWriter.TradeFill> tradeFills(FillBuffer fills) {
+        if (fills.size() == 0) return List.of();
+        Instant now = Instant.now();
+        List<TradeWriter.TradeFill> trades = new ArrayList<>(fills.size());
+        for (int i = 0; i < fills.size(); i++) {
+            trades.add(new TradeWriter.TradeFill(fills.takerPortfolioId(i), symbols.symbol(fills.symbolId(i)),
+                fills.takerBuy(i) ? TradeType.BUY : TradeType.SELL, fills.quantity(i),
+                Ticks.toPrice(fills.price(i)), now));
+        }
+        return trades;
+    }
+
+    public int internSymbol(String symbol) {
+        return symbols.intern(symbol);
+    }
+
+    /** Re-registers a symbol under the id it had before a restart; see {@link OrderJournal}. */
+    public void restoreSymbol(String symbol, int symbolId) {
+        symbols.internAs(symbol, symbolId);
+    }
+
+    public String symbol(int symbolId) {
+        return symbols.symbol(symbolId);
+    }
+
+    public int symbolIdLimit() {
+        return symbols.idLimit();
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public int laneOf(int symbolId) {
+        return symbolId & (lanes.length - 1);
+    }
+
+    public int laneOfOrder(long orderId) {
+        return (int) orderId & (lanes.length - 1);
+    }
+
+    public long restingQuantity(String symbol, Order.Side side) {
+        int symbolId = symbols.idOf(symbol);
+        if (symbolId < 0) return 0;
+        synchronized (laneFor(symbolId)) {
+            return book(symbolId).restingQuantity(side == Order.Side.BUY);
+        }
+    }
+
+    /**
+     * The top {@code levels} price levels on each side of a book. Levels keep
+     * running totals as orders come and go, so this copies at most
+     * {@code 2 * levels} numbers under the lane lock and never walks a queue.
+     */
+    public OrderBookDepth depth(String symbol, int levels) {
+        int symbolId = symbols.idOf(symbol);
+        if (symbolId < 0) return new OrderBookDepth(symbol, 0, List.of(), List.of());
+        return depthIfChanged(symbolId, levels, -1);
+    }
+
+    /** Like {@link #depth(String, int)}, but null when the book is still at {@code sinceVersion}. */
+    public OrderBookDepth depthIfChanged(int symbolId, int levels, long sinceVersion) {
+        OrderBook book = book(symbolId);
+        synchronized (laneFor(symbolId)) {
+            if (book.getVersion() == sinceVersion) return null;
+            return new OrderBookDepth(symbols.symbol(symbolId), book.getVersion(),
+                topLevels(book.getBids(), levels), topLevels(book.getAsks(), levels));
+        }
+    }
+
+    private static List<OrderBookDepth.Level> topLevels(BookSide side, int levels) {
+        int count = Math.min(levels, side.levelCount());
+        List<OrderBookDepth.Level> top = new ArrayList<>(count);
+        for (int depth = 0; depth < count; depth++) {
+            PriceLevel level = side.levelAt(depth);
+            top.add(new OrderBookDepth.Level(Ticks.toPrice(level.getPrice()), level.getTotalQuantity(),
+                level.getOrderCount()));
         }
-        return total;
+        return top;
+    }
+
+    private MatchingLane laneFor(int symbolId) {
+        return lanes[laneOf(symbolId)];
+    }
+
+    private OrderBook book(int symbolId) {
+        OrderBook[] current = books;
+        if (symbolId < current.length && current[symbolId] != null) return current[symbolId];
+        return createBook(symbolId);
+    }
+
+    private synchronized OrderBook createBook(int symbolId) {
+        OrderBook[] current = books;
+        if (symbolId >= current.length) current = Arrays.copyOf(current, Math.max(current.length * 2, symbolId + 1));
+        if (current[symbolId] == null) current[symbolId] = new OrderBook(symbolId, laneFor(symbolId).pool, laneFor(symbolId).index);
+        books = current;
+        return current[symbolId];
+    }
+
+    private static MatchingLane[] newLanes(int parallelism) {
+        int count = Math.min(1 << SYMBOL_BITS, Integer.highestOneBit(Math.max(1, parallelism - 1)) << 1);
+        MatchingLane[] lanes = new MatchingLane[count];
+        for (int i = 0; i < count; i++) lanes[i] = new MatchingLane();
+        return lanes;
     }
 }
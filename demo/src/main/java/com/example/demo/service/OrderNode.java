@@ -0,0 +1,38 @@
+package com.example.demo.service;
+
+/**
+ * A resting order inside a {@link PriceLevel}. Nodes hold only primitives and
+ * are recycled through an {@link OrderPool}, so a book in steady state never
+ * allocates while matching.
+ */
+public final class OrderNode {
+    long orderId;
+    int symbolId;
+    long portfolioId;
+    boolean buy;
+    long price;
+    int quantity;
+
+    PriceLevel level;
+    OrderNode prev;
+    OrderNode next;
+
+    public long getOrderId() { return orderId; }
+    public int getSymbolId() { return symbolId; }
+    public long getPortfolioId() { return portfolioId; }
+    public boolean isBuy() { return buy; }
+    public long getPrice() { return price; }
+    public int getQuantity() { return quantity; }
+
+    void clear() {
+        orderId = 0;
+        symbolId = 0;
+        portfolioId = 0;
+        buy = false;
+        price = 0;
+        quantity = 0;
+        level = null;
+        prev = null;
+        next = null;
+    }
+}
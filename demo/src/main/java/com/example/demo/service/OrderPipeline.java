@@ -0,0 +1,489 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dto.OrderUpdate;
+
+/**
+ * Sequenced ingestion in front of {@link OrderMatchingService}. Request
+ * threads claim a slot in a preallocated ring, copy the order in and return;
+ * everything else happens on dedicated stage threads that consume the ring in
+ * batches, each gated on the stage before it:
+ *
+ * <pre>
+ *   producers -> journal -> match[lane 0..n] -> persist -> publish
+ * </pre>
+ *
+ * Matching is sharded by lane, one consumer per {@link OrderMatchingService}
+ * lane, so symbols still match in parallel. A producer that laps the slowest
+ * stage waits for it, which is the pipeline's backpressure.
+ *
+ * The journal stage writes every command to the {@link OrderJournal} and
+ * commits once per batch before matching sees it, and {@link #start()} replays
+ * the journal first, so the books survive a restart. Orders placed directly
+ * through {@link OrderMatchingService#placeOrder} bypass the journal.
+ *
+ * Snapshots travel through the ring as a barrier event: the journal stage
+ * stamps it with the journal position, each match stage copies its own
+ * lane's books when it reaches it, and the persist stage writes the file. The
+ * copy is therefore exact at that position, and only one lane at a time
+ * pauses for it. Recovery loads the newest snapshot and replays the journal
+ * from its position.
+ */
+@Service
+public class OrderPipeline implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(OrderPipeline.class);
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    enum EventType { NEW, CANCEL, AMEND, SNAPSHOT }
+
+    /** One ring slot. Slots are reused, so stages must copy anything they keep. */
+    static final class OrderEvent {
+        EventType type;
+        long orderId;
+        long portfolioId;
+        int symbolId;
+        boolean buy;
+        long price;
+        int quantity;
+        int remaining;
+        boolean accepted;
+        final FillBuffer fills = new FillBuffer();
+        long journalPosition;
+        byte[][] laneSnapshots;
+        long publishedAt;
+    }
+
+    interface EventHandler {
+        void onEvent(OrderEvent event, long sequence, boolean endOfBatch);
+    }
+
+    private final OrderMatchingService matchingService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MetricsService metricsService;
+    private final OrderLatency latency;
+    private final OrderJournal journal;
+    private final SnapshotStore snapshots;
+    private final long snapshotEvery;
+    private final AtomicLong sinceSnapshot = new AtomicLong();
+
+    private final OrderEvent[] ring;
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    private final Stage journalStage;
+    private final Stage[] matchStages;
+    private final Stage persistStage;
+    private final Stage publishStage;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    @Autowired
+    public OrderPipeline(OrderMatchingService matchingService,
+                         SimpMessagingTemplate messagingTemplate,
+                         MetricsService metricsService,
+                         OrderLatency latency,
+                         OrderJournal journal,
+                         SnapshotStore snapshots,
+                         @Value("${orders.snapshot.every-events:100000}") long snapshotEvery) {
+        this(matchingService, messagingTemplate, metricsService, latency, journal, snapshots, snapshotEvery,
+            DEFAULT_CAPACITY);
+    }
+
+    OrderPipeline(OrderMatchingService matchingService,
+                  SimpMessagingTemplate messagingTemplate,
+                  MetricsService metricsService,
+                  OrderLatency latency,
+                  OrderJournal journal,
+                  SnapshotStore snapshots,
+                  long snapshotEvery,
+                  int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.matchingService = matchingService;
+        this.messagingTemplate = messagingTemplate;
+        this.metricsService = metricsService;
+        this.latency = latency;
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.snapshotEvery = snapshotEvery;
+        this.ring = new OrderEvent[capacity];
+        for (int i = 0; i < capacity; i++) ring[i] = new OrderEvent();
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+
+        this.journalStage = new Stage("order-journal", null, this::journal);
+        this.matchStages = new Stage[matchingService.laneCount()];
+        for (int lane = 0; lane < matchStages.length; lane++) {
+            matchStages[lane] = new Stage("order-match-" + lane, new Stage[] { journalStage }, matcherFor(lane));
+        }
+        this.persistStage = new Stage("order-persist", matchStages, this::persist);
+        this.publishStage = new Stage("order-publish", new Stage[] { persistStage }, this::publish);
+        metricsService.gauge("OrderPipelineBacklog", "Count", () -> claimed.get() - publishStage.sequence.get());
+    }
+
+    /**
+     * Claims the next slot, copies the order in and makes it visible to the
+     * journal stage. Returns the order id assigned to it, which identifies it
+     * in later updates, cancels and amends. Blocks only while the ring is full.
+     */
+    public long submit(long portfolioId, String symbol, boolean buy, long price, int quantity) {
+        // Checked here, not in the journal stage, so a bad symbol never reaches the ring
+        if (!OrderJournal.symbolFits(symbol)) {
+            throw new IllegalArgumentException("Symbol longer than " + OrderJournal.MAX_SYMBOL_BYTES + " bytes");
+        }
+        int symbolId = matchingService.internSymbol(symbol);
+        long orderId = matchingService.nextOrderId(symbolId);
+        long sequence = claim();
+        OrderEvent event = ring[(int) sequence & mask];
+        event.type = EventType.NEW;
+        event.orderId = orderId;
+        event.portfolioId = portfolioId;
+        event.symbolId = symbolId;
+        event.buy = buy;
+        event.price = price;
+        event.quantity = quantity;
+        commit(sequence);
+        countTowardSnapshot();
+        return orderId;
+    }
+
+    /** Queues a cancel; the outcome is published like any other order update. */
+    public void cancel(long orderId, long portfolioId) {
+        long sequence = claim();
+        OrderEvent event = ring[(int) sequence & mask];
+        event.type = EventType.CANCEL;
+        event.orderId = orderId;
+        event.portfolioId = portfolioId;
+        event.quantity = 0;
+        commit(sequence);
+        countTowardSnapshot();
+    }
+
+    /** Queues a quantity-down amend of a resting order. */
+    public void amend(long orderId, long portfolioId, int newQuantity) {
+        long sequence = claim();
+        OrderEvent event = ring[(int) sequence & mask];
+        event.type = EventType.AMEND;
+        event.orderId = orderId;
+        event.portfolioId = portfolioId;
+        event.quantity = newQuantity;
+        commit(sequence);
+        countTowardSnapshot();
+    }
+
+    /**
+     * Queues a snapshot of every book. Does nothing unless both the journal
+     * and the snapshot store are configured, since a snapshot is only useful
+     * as a starting point for journal replay.
+     */
+    public void requestSnapshot() {
+        if (!journal.isEnabled() || !snapshots.isEnabled()) return;
+        sinceSnapshot.set(0);
+        long sequence = claim();
+        OrderEvent event = ring[(int) sequence & mask];
+        event.type = EventType.SNAPSHOT;
+        event.quantity = 0;
+        event.laneSnapshots = new byte[matchStages.length][];
+        commit(sequence);
+    }
+
+    @Scheduled(fixedDelayString = "${orders.snapshot.interval-ms:300000}",
+               initialDelayString = "${orders.snapshot.interval-ms:300000}")
+    public void scheduledSnapshot() {
+        if (running) requestSnapshot();
+    }
+
+    /** Exactly one producer sees the count hit the threshold, and that one asks for the snapshot. */
+    private void countTowardSnapshot() {
+        if (snapshotEvery > 0 && sinceSnapshot.incrementAndGet() == snapshotEvery) requestSnapshot();
+    }
+
+    private long claim() {
+        if (!running) throw new IllegalStateException("Order pipeline is not running");
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        while (wrapPoint > publishStage.sequence.get()) {
+            LockSupport.parkNanos(1_000);
+        }
+        return sequence;
+    }
+
+    private void commit(long sequence) {
+        OrderEvent event = ring[(int) sequence & mask];
+        event.remaining = event.quantity;
+        event.accepted = false;
+        event.fills.clear();
+        event.publishedAt = System.nanoTime();
+        published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    /** Waits until every order claimed so far has been published. */
+    public boolean awaitIdle(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target = claimed.get();
+        while (publishStage.sequence.get() < target) {
+            if (System.nanoTime() > deadline) return false;
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /** Write-ahead: a batch is on disk before any of it reaches a matcher. */
+    private void journal(OrderEvent event, long sequence, boolean endOfBatch) {
+        long start = System.nanoTime();
+        switch (event.type) {
+            case NEW -> journal.appendNewOrder(event.orderId, event.symbolId, matchingService.symbol(event.symbolId),
+                event.portfolioId, event.buy, event.price, event.quantity);
+            case CANCEL -> journal.appendCancel(event.orderId, event.portfolioId);
+            case AMEND -> journal.appendAmend(event.orderId, event.portfolioId, event.quantity);
+            case SNAPSHOT -> {
+                journal.commit();
+                event.journalPosition = journal.position();
+            }
+        }
+        if (endOfBatch) journal.commit();
+        latency.recordSince(OrderLatency.Stage.JOURNAL, start);
+    }
+
+    private EventHandler matcherFor(int lane) {
+        return (event, seq, end) -> {
+            if (event.type == EventType.SNAPSHOT) {
+                event.laneSnapshots[lane] = matchingService.snapshotLane(lane);
+                return;
+            }
+            if (matchingService.laneOfOrder(event.orderId) != lane) return;
+            long start = System.nanoTime();
+            latency.record(OrderLatency.Stage.QUEUE, start - event.publishedAt);
+            switch (event.type) {
+                case NEW -> {
+                    event.remaining = matchingService.match(event.orderId, event.symbolId, event.portfolioId,
+                        event.buy, event.price, event.quantity, event.fills);
+                    event.accepted = true;
+                }
+                case CANCEL -> {
+                    event.remaining = matchingService.cancelOrder(event.orderId, event.portfolioId);
+                    event.accepted = event.remaining > 0;
+                }
+                case AMEND -> event.accepted =
+                    matchingService.amendOrder(event.orderId, event.portfolioId, event.quantity);
+                default -> { }
+            }
+            latency.recordSince(OrderLatency.Stage.MATCH, start);
+        };
+    }
+
+    private void persist(OrderEvent event, long sequence, boolean endOfBatch) {
+        if (event.type == EventType.SNAPSHOT) {
+            writeSnapshot(event);
+            return;
+        }
+        if (event.type != EventType.NEW) return;
+        long start = System.nanoTime();
+        FillBuffer fills = event.fills;
+        for (int i = 0; i < fills.size(); i++) {
+            journal.appendFill(fills.takerOrderId(i), fills.makerOrderId(i), fills.price(i), fills.quantity(i));
+        }
+        matchingService.persistFills(fills);
+        latency.recordSince(OrderLatency.Stage.PERSIST, start);
+    }
+
+    private void writeSnapshot(OrderEvent event) {
+        try {
+            long keepFrom = snapshots.write(event.journalPosition, matchingService, event.laneSnapshots);
+            journal.deleteSegmentsBefore(keepFrom);
+        } catch (IOException e) {
+            logger.error("Failed to write order book snapshot", e);
+        } finally {
+            event.laneSnapshots = null;
+        }
+    }
+
+    private void publish(OrderEvent event, long sequence, boolean endOfBatch) {
+        if (event.type == EventType.SNAPSHOT) return;
+        OrderUpdate update = switch (event.type) {
+            case NEW -> {
+                int filled = event.quantity - event.remaining;
+                String status = event.remaining == 0 ? "FILLED" : filled > 0 ? "PARTIALLY_FILLED" : "NEW";
+                yield new OrderUpdate(event.orderId, status, matchingService.symbol(event.symbolId),
+                    event.buy ? "BUY" : "SELL", event.quantity, filled, event.remaining);
+            }
+            case CANCEL -> new OrderUpdate(event.orderId, event.accepted ? "CANCELLED" : "REJECTED",
+                null, null, 0, 0, 0);
+            case AMEND -> new OrderUpdate(event.orderId, event.accepted ? "AMENDED" : "REJECTED",
+                null, null, event.quantity, 0, event.accepted ? event.quantity : 0);
+            case SNAPSHOT -> throw new IllegalStateException("Snapshots are not published");
+        };
+        long start = System.nanoTime();
+        messagingTemplate.convertAndSend("/topic/orders/" + event.portfolioId, update);
+        latency.recordSince(OrderLatency.Stage.PUBLISH, start);
+        if (event.type == EventType.NEW) metricsService.publishOrderRate(1);
+    }
+
+    private long highestPublished(long from, long to) {
+        for (long s = from; s <= to; s++) {
+            if (published.get((int) s & mask) != (int) (s >>> indexShift)) return s - 1;
+        }
+        return to;
+    }
+
+    /**
+     * A consumer thread. It processes every sequence its upstream stages have
+     * finished, in one batch, then advances its own sequence; the first stage
+     * reads straight from what producers have published.
+     */
+    private final class Stage implements Runnable {
+        final String name;
+        final Stage[] upstream;
+        final EventHandler handler;
+        final AtomicLong sequence = new AtomicLong(-1);
+
+        Stage(String name, Stage[] upstream, EventHandler handler) {
+            this.name = name;
+            this.upstream = upstream;
+            this.handler = handler;
+        }
+
+        long available(long next) {
+            if (upstream == null) return highestPublished(next, claimed.get());
+            long min = Long.MAX_VALUE;
+            for (Stage stage : upstream) min = Math.min(min, stage.sequence.get());
+            return min;
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (running || next <= claimed.get()) {
+                long available = available(next);
+                if (available < next) {
+                    idle = backOff(idle);
+                    continue;
+                }
+                idle = 0;
+                for (long s = next; s <= available; s++) {
+                    try {
+                        handler.onEvent(ring[(int) s & mask], s, s == available);
+                    } catch (RuntimeException e) {
+                        logger.error("Stage {} failed on order {}", name, s, e);
+                    }
+                }
+                sequence.lazySet(available);
+                next = available + 1;
+            }
+        }
+    }
+
+    private static int backOff(int idle) {
+        if (idle < 100) Thread.onSpinWait();
+        else if (idle < 200) Thread.yield();
+        else LockSupport.parkNanos(idle < 1000 ? 10_000 : 1_000_000);
+        return idle + 1;
+    }
+
+    /**
+     * Rebuilds the books from the newest snapshot plus every journaled command
+     * after it, re-run through the matcher. Fills produced on the way were
+     * handed to the trade writer by the previous run, so they are dropped;
+     * this holds because the journal is only configured next to a persistent
+     * database (see application-mysql.properties). Returns the number of
+     * journal records read.
+     */
+    long recover() {
+        FillBuffer replayed = new FillBuffer();
+        long started = System.nanoTime();
+        long records;
+        try {
+            long from = journal.isEnabled() ? snapshots.loadLatest(matchingService) : 0;
+            records = journal.replay(from, new OrderJournal.Visitor() {
+                @Override
+                public void onNewOrder(long orderId, int symbolId, String symbol, long portfolioId,
+                                       boolean buy, long price, int quantity) {
+                    matchingService.restoreSymbol(symbol, symbolId);
+                    matchingService.advanceOrderIds(orderId);
+                    matchingService.match(orderId, symbolId, portfolioId, buy, price, quantity, replayed);
+                    replayed.clear();
+                }
+
+                @Override
+                public void onCancel(long orderId, long portfolioId) {
+                    matchingService.cancelOrder(orderId, portfolioId);
+                }
+
+                @Override
+                public void onAmend(long orderId, long portfolioId, int quantity) {
+                    matchingService.amendOrder(orderId, portfolioId, quantity);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay order journal", e);
+        }
+        if (records > 0) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            logger.info("Replayed {} journal records in {} ms ({} records/s)",
+                records, millis, records * 1000 / Math.max(1, millis));
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        recover();
+        running = true;
+        List<Stage> stages = new ArrayList<>();
+        stages.add(journalStage);
+        stages.addAll(List.of(matchStages));
+        stages.add(persistStage);
+        stages.add(publishStage);
+        for (Stage stage : stages) {
+            Thread thread = new Thread(stage, stage.name);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /** Stops accepting orders and lets the stages drain what was already claimed. */
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
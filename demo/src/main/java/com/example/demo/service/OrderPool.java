@@ -0,0 +1,31 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+
+/**
+ * Free list of {@link OrderNode}s shared by the books on one matching lane.
+ * Only the lane's writer touches it, so there is no synchronization; the
+ * pool only allocates when the number of live orders passes its high-water mark.
+ */
+public final class OrderPool {
+    private OrderNode[] free;
+    private int size;
+
+    public OrderPool(int initialCapacity) {
+        free = new OrderNode[initialCapacity];
+        for (int i = 0; i < initialCapacity; i++) free[i] = new OrderNode();
+        size = initialCapacity;
+    }
+
+    OrderNode acquire() {
+        return size == 0 ? new OrderNode() : free[--size];
+    }
+
+    void release(OrderNode node) {
+        node.clear();
+        if (size == free.length) free = Arrays.copyOf(free, size * 2);
+        free[size++] = node;
+    }
+
+    public int available() { return size; }
+}
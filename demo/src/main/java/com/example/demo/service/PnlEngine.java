@@ -0,0 +1,278 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.dto.PnlReport;
+import com.example.demo.dto.TransactionRow;
+import com.example.demo.entity.TradeType;
+import com.example.demo.repository.TransactionRepository;
+
+/**
+ * Realized and unrealized P&L per portfolio on FIFO tax lots.
+ *
+ * Each position keeps its open lots in a ring buffer of (shares, price)
+ * pairs, oldest first. A fill that reduces the position closes lots from the
+ * head and books their realized P&L; whatever is left opens a new lot at the
+ * tail. Every lot is opened and closed once, so a fill costs O(1) amortized.
+ * The position also keeps the running cost of its open lots, so unrealized
+ * P&L is shares x price - open cost, marked against {@link MarketPrices}.
+ *
+ * A portfolio's lots are built the first time its P&L is asked for, by
+ * replaying its transactions once inside {@link PositionLedger#quiesced}; from
+ * then on the ledger feeds every fill in as it is applied.
+ *
+ * Fills and ticks of a held symbol only mark the portfolio dirty. Every
+ * interval, one report per dirty portfolio goes out on
+ * /topic/portfolio/{id}/pnl, built from the latest lots and prices, so a burst
+ * of ticks costs a subscriber one frame and costs the tick path no report
+ * building at all. Amounts are fixed point with {@value #SCALE} decimals, as in the ledger.
+ */
+@Service
+public class PnlEngine implements PositionLedger.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(PnlEngine.class);
+
+    static final int SCALE = 4;
+
+    private final PositionLedger ledger;
+    private final MarketPrices prices;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TradeHistory history;
+    private final ConcurrentHashMap<Long, Book> books = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Long>> holders = new ConcurrentHashMap<>();
+    /** Portfolios whose P&L may have moved since their last report. */
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    /** Feeds a portfolio's trades, oldest first, to {@code sink}; returns how many there were. */
+    public interface TradeHistory {
+        int replay(long portfolioId, Consumer<TransactionRow> sink);
+    }
+
+    @Autowired
+    public PnlEngine(PositionLedger ledger, MarketPrices prices, SimpMessagingTemplate messagingTemplate,
+                     TransactionRepository transactionRepository, PlatformTransactionManager transactionManager) {
+        this(ledger, prices, messagingTemplate, streamed(transactionRepository, transactionManager));
+    }
+
+    public PnlEngine(PositionLedger ledger, MarketPrices prices, SimpMessagingTemplate messagingTemplate,
+                     TradeHistory history) {
+        this.ledger = ledger;
+        this.prices = prices;
+        this.messagingTemplate = messagingTemplate;
+        this.history = history;
+        ledger.addListener(this);
+    }
+
+    private static TradeHistory streamed(TransactionRepository transactionRepository,
+                                         PlatformTransactionManager transactionManager) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return (portfolioId, sink) -> readOnly.execute(status -> {
+            int count = 0;
+            try (Stream<TransactionRow> rows = transactionRepository.streamOldestFirst(portfolioId)) {
+                for (TransactionRow row : (Iterable<TransactionRow>) rows::iterator) {
+                    sink.accept(row);
+                    count++;
+                }
+            }
+            return count;
+        });
+    }
+
+    /** The portfolio's P&L at the latest prices, building its lots first if needed. */
+    public PnlReport report(long portfolioId) {
+        Book book = book(portfolioId);
+        synchronized (book) {
+            return book.report(portfolioId, prices::price);
+        }
+    }
+
+    /** Marks the loaded portfolios holding {@code symbol} for a fresh report, after its price moved. */
+    public void onTick(String symbol) {
+        Set<Long> held = holders.get(symbol);
+        if (held != null) dirty.addAll(held);
+    }
+
+    /** Publishes one report for each portfolio marked since the last call. */
+    @Scheduled(fixedRateString = "${portfolio.pnl.interval-ms:250}")
+    public void publishChanged() {
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+            long portfolioId = it.next();
+            // Unmarked before the report is built, so a change meanwhile marks it again
+            it.remove();
+            Book book = books.get(portfolioId);
+            if (book == null) continue;
+            PnlReport report;
+            synchronized (book) {
+                report = book.report(portfolioId, prices::price);
+            }
+            publish(report);
+        }
+    }
+
+    @Override
+    public void onSharesChanged(long portfolioId, String symbol, long before, long after) {
+        // Lots follow fills, not share counts
+    }
+
+    @Override
+    public void onFill(PositionLedger.Fill fill) {
+        Book book = books.get(fill.portfolioId());
+        if (book == null) return; // not built yet; the replay will include this fill
+        synchronized (book) {
+            book.apply(fill.symbol(), fill.type(), fill.quantity(), fill.price());
+            track(fill.portfolioId(), fill.symbol(), book.positions.get(fill.symbol()).shares);
+        }
+        dirty.add(fill.portfolioId());
+    }
+
+    @Override
+    public void onEvicted(long portfolioId) {
+        Book book = books.remove(portfolioId);
+        if (book == null) return;
+        synchronized (book) {
+            book.positions.keySet().forEach(symbol -> track(portfolioId, symbol, 0));
+        }
+    }
+
+    private Book book(long portfolioId) {
+        Book book = books.get(portfolioId);
+        if (book != null) return book;
+        return ledger.quiesced(() -> books.computeIfAbsent(portfolioId, this::replay));
+    }
+
+    private Book replay(long portfolioId) {
+        long started = System.nanoTime();
+        Book book = new Book();
+        int trades = history.replay(portfolioId,
+            row -> book.apply(row.stockSymbol(), row.type(), row.quantity(), row.price()));
+        book.positions.forEach((symbol, position) -> track(portfolioId, symbol, position.shares));
+        logger.debug("Built lots for portfolio {} from {} trades in {} us",
+            portfolioId, trades, (System.nanoTime() - started) / 1_000);
+        return book;
+    }
+
+    private void track(long portfolioId, String symbol, long shares) {
+        if (shares != 0) {
+            holders.computeIfAbsent(symbol, s -> ConcurrentHashMap.newKeySet()).add(portfolioId);
+        } else {
+            Set<Long> held = holders.get(symbol);
+            if (held != null) held.remove(portfolioId);
+        }
+    }
+
+    private void publish(PnlReport report) {
+        messagingTemplate.convertAndSend("/topic/portfolio/" + report.portfolioId() + "/pnl", report);
+    }
+
+    static long toUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal fromUnits(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /** One portfolio's positions. */
+    static final class Book {
+        final Map<String, Lots> positions = new HashMap<>();
+
+        void apply(String symbol, TradeType type, int quantity, BigDecimal price) {
+            positions.computeIfAbsent(symbol, s -> new Lots())
+                .apply(type == TradeType.BUY ? quantity : -quantity, toUnits(price));
+        }
+
+        PnlReport report(long portfolioId, Function<String, BigDecimal> price) {
+            long realized = 0;
+            BigDecimal unrealized = BigDecimal.ZERO;
+            List<PnlReport.PositionPnl> rows = new ArrayList<>(positions.size());
+            for (Map.Entry<String, Lots> entry : positions.entrySet()) {
+                Lots lots = entry.getValue();
+                BigDecimal mark = price.apply(entry.getKey());
+                BigDecimal open = mark.multiply(BigDecimal.valueOf(lots.shares)).subtract(fromUnits(lots.openCost));
+                realized += lots.realized;
+                unrealized = unrealized.add(open);
+                BigDecimal averageCost = lots.shares == 0 ? BigDecimal.ZERO
+                    : fromUnits(lots.openCost).divide(BigDecimal.valueOf(lots.shares), SCALE, RoundingMode.HALF_UP);
+                rows.add(new PnlReport.PositionPnl(entry.getKey(), lots.shares, lots.size, averageCost, mark,
+                    fromUnits(lots.realized), open));
+            }
+            BigDecimal realizedTotal = fromUnits(realized);
+            return new PnlReport(portfolioId, realizedTotal, unrealized, realizedTotal.add(unrealized), rows, Instant.now());
+        }
+    }
+
+    /**
+     * Open lots of one position, oldest first, in a ring buffer. All open lots
+     * are on the same side: long lots have positive shares, short lots negative.
+     */
+    static final class Lots {
+        private long[] lotShares = new long[4];
+        private long[] lotPrice = new long[4];
+        private int head;
+        int size;
+        long shares;
+        /** Sum of shares x price over open lots, in units. */
+        long openCost;
+        long realized;
+
+        /** Applies a trade of {@code signed} shares (negative to sell) at {@code price} units. */
+        void apply(long signed, long price) {
+            long remaining = signed;
+            while (remaining != 0 && size > 0 && Long.signum(lotShares[head]) != Long.signum(remaining)) {
+                long lot = lotShares[head];
+                long side = Long.signum(lot);
+                long matched = Math.min(Math.abs(remaining), Math.abs(lot));
+                realized = Math.addExact(realized, Math.multiplyExact(matched * side, price - lotPrice[head]));
+                openCost -= matched * side * lotPrice[head];
+                lotShares[head] = lot - matched * side;
+                remaining += matched * side;
+                if (lotShares[head] == 0) {
+                    head = (head + 1) % lotShares.length;
+                    size--;
+                }
+            }
+            if (remaining != 0) {
+                if (size == lotShares.length) grow();
+                int tail = (head + size) % lotShares.length;
+                lotShares[tail] = remaining;
+                lotPrice[tail] = price;
+                size++;
+                openCost = Math.addExact(openCost, Math.multiplyExact(remaining, price));
+            }
+            shares += signed;
+        }
+
+        private void grow() {
+            long[] moreShares = new long[lotShares.length * 2];
+            long[] morePrice = new long[lotShares.length * 2];
+            for (int i = 0; i < size; i++) {
+                moreShares[i] = lotShares[(head + i) % lotShares.length];
+                morePrice[i] = lotPrice[(head + i) % lotShares.length];
+            }
+            lotShares = moreShares;
+            lotPrice = morePrice;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.PortfolioValueRollup;
+import com.example.demo.entity.RollupResolution;
+import com.example.demo.repository.PortfolioValueRollupRepository;
+
+/**
+ * Minute, hour and day OHLC rollups of portfolio value snapshots. Every
+ * snapshot writer calls {@link #record} inside the transaction that stores the
+ * snapshot, so the rollups never disagree with the raw history, and a chart
+ * over any range reads buckets instead of raw rows.
+ */
+@Service
+public class PortfolioValueRollups {
+    /** One portfolio value snapshot. */
+    public record Snapshot(long portfolioId, Instant timestamp, BigDecimal value) { }
+
+    private final Upserts upserts;
+    private final PortfolioValueRollupRepository rollupRepo;
+
+    public PortfolioValueRollups(Upserts upserts, PortfolioValueRollupRepository rollupRepo) {
+        this.upserts = upserts;
+        this.rollupRepo = rollupRepo;
+    }
+
+    /** Folds {@code snapshots} into every resolution, as one JDBC batch in the caller's transaction. */
+    public void record(List<Snapshot> snapshots) {
+        upserts.applySnapshots(snapshots);
+    }
+
+    /** Buckets overlapping [from, to), oldest first. */
+    public List<PortfolioValueRollup> range(long portfolioId, RollupResolution resolution, Instant from, Instant to) {
+        return rollupRepo.findRange(portfolioId, resolution, resolution.bucketStart(from), to);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.Position;
+import com.example.demo.entity.TradeType;
+import com.example.demo.repository.PositionRepository;
+
+/**
+ * Current holdings of every portfolio that has been looked at since startup:
+ * net shares, average cost basis and last trade price per symbol. A fill
+ * updates one entry, so valuing a portfolio costs O(symbols held) rather than
+ * a fold over its whole trade history.
+ *
+ * A portfolio is loaded from its rows in the {@code positions} table the first
+ * time it is asked for, which is a handful of rows however long its history.
+ * Writers go through {@link #record}, which applies the fills and runs the
+ * database write together while holding a shared lock; loading holds the lock
+ * exclusively, so it never reads a fill that is committed but not yet applied,
+ * or misses one that is applied but not yet committed. If the write fails, the
+ * portfolios it touched are dropped and reloaded on next use.
+ */
+@Service
+public class PositionLedger {
+    private static final Logger logger = LoggerFactory.getLogger(PositionLedger.class);
+
+    /** A trade to apply to a portfolio's holdings. */
+    public record Fill(long portfolioId, String symbol, TradeType type, int quantity, BigDecimal price) { }
+
+    /** Holdings in one symbol. Shares are negative for a short position, which carries no cost basis. */
+    public record Holding(String symbol, long shares, BigDecimal costBasis, BigDecimal lastPrice) {
+        public BigDecimal averageCost() {
+            return shares > 0 ? costBasis.divide(BigDecimal.valueOf(shares), 4, RoundingMode.HALF_UP) : BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * Told whenever a portfolio's share count in a symbol changes, including
+     * when a portfolio is loaded (from zero) or dropped (to zero). Called with
+     * the portfolio's holdings locked, so calls for one portfolio never overlap.
+     */
+    public interface Listener {
+        void onSharesChanged(long portfolioId, String symbol, long before, long after);
+
+        /** Told each fill applied to a loaded portfolio, with its holdings locked. */
+        default void onFill(Fill fill) { }
+
+        /** Told when a portfolio is dropped, e.g. because a write failed and its fills were rolled back. */
+        default void onEvicted(long portfolioId) { }
+    }
+
+    private final LongFunction<List<Position>> positions;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Long, Book> portfolios = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock loadLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public PositionLedger(PositionRepository positionRepository) {
+        this(positionRepository::findByPortfolioId);
+    }
+
+    public PositionLedger(LongFunction<List<Position>> positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Applies {@code fills} and then runs {@code store}, which must persist
+     * them. Returns what {@code store} returns.
+     */
+    public <T> T record(Collection<Fill> fills, Supplier<T> store) {
+        Set<Long> touched = new LinkedHashSet<>();
+        for (Fill fill : fills) touched.add(fill.portfolioId());
+        for (long portfolioId : touched) book(portfolioId);
+
+        loadLock.readLock().lock();
+        try {
+            for (Fill fill : fills) {
+                Book book = portfolios.get(fill.portfolioId());
+                if (book == null) continue; // evicted meanwhile; the reload will read this fill
+                synchronized (book) {
+                    if (book.dropped) continue;
+                    Entry entry = book.entry(fill.symbol());
+                    long before = entry.shares;
+                    entry.apply(fill.type(), fill.quantity(), fill.price());
+                    notifyChanged(fill.portfolioId(), fill.symbol(), before, entry.shares);
+                    for (Listener listener : listeners) listener.onFill(fill);
+                }
+            }
+            return store.get();
+        } catch (RuntimeException | Error e) {
+            touched.forEach(this::evict);
+            throw e;
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    /** Open positions, short ones included, in no particular order. */
+    public List<Holding> holdings(long portfolioId) {
+        Book book = book(portfolioId);
+        synchronized (book) {
+            List<Holding> holdings = new ArrayList<>(book.bySymbol.size());
+            for (Map.Entry<String, Entry> entry : book.bySymbol.entrySet()) {
+                Entry e = entry.getValue();
+                if (e.shares != 0) holdings.add(new Holding(entry.getKey(), e.shares, e.costBasis, e.lastPrice));
+            }
+            return holdings;
+        }
+    }
+
+    /** Long positions valued at {@code price}; short and flat ones count as zero. */
+    public BigDecimal value(long portfolioId, Function<String, BigDecimal> price) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Holding holding : holdings(portfolioId)) {
+            if (holding.shares() > 0) {
+                total = total.add(price.apply(holding.symbol()).multiply(BigDecimal.valueOf(holding.shares())));
+            }
+        }
+        return total;
+    }
+
+    /** Long positions valued at the last price each symbol traded at in this portfolio. */
+    public BigDecimal lastTradeValue(long portfolioId) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (Holding holding : holdings(portfolioId)) {
+            if (holding.shares() > 0) {
+                total = total.add(holding.lastPrice().multiply(BigDecimal.valueOf(holding.shares())));
+            }
+        }
+        return total;
+    }
+
+    /** Drops a portfolio so the next access reloads it from the database. */
+    public void evict(long portfolioId) {
+        Book book = portfolios.remove(portfolioId);
+        if (book == null) return;
+        synchronized (book) {
+            book.dropped = true;
+            book.bySymbol.forEach((symbol, entry) -> notifyChanged(portfolioId, symbol, entry.shares, 0));
+            for (Listener listener : listeners) listener.onEvicted(portfolioId);
+        }
+    }
+
+    /**
+     * Runs {@code load} while no fill is being applied or stored, so whatever
+     * it reads from the database matches exactly the fills listeners have
+     * already been told about. For listeners that build their own state from
+     * the trade history.
+     */
+    public <T> T quiesced(Supplier<T> load) {
+        loadLock.writeLock().lock();
+        try {
+            return load.get();
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private void notifyChanged(long portfolioId, String symbol, long before, long after) {
+        if (before == after) return;
+        for (Listener listener : listeners) listener.onSharesChanged(portfolioId, symbol, before, after);
+    }
+
+    private Book book(long portfolioId) {
+        Book book = portfolios.get(portfolioId);
+        if (book != null) return book;
+        // Inside record() the lock can't be upgraded; read through without caching
+        if (loadLock.getReadHoldCount() > 0) return load(portfolioId);
+        loadLock.writeLock().lock();
+        try {
+            book = portfolios.get(portfolioId);
+            if (book != null) return book;
+            Book loaded = load(portfolioId);
+            portfolios.put(portfolioId, loaded);
+            synchronized (loaded) {
+                loaded.bySymbol.forEach((symbol, entry) -> notifyChanged(portfolioId, symbol, 0, entry.shares));
+            }
+            return loaded;
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    private Book load(long portfolioId) {
+        long started = System.nanoTime();
+        List<Position> rows = positions.apply(portfolioId);
+        Book book = new Book();
+        for (Position row : rows) {
+            Entry entry = new Entry();
+            entry.shares = row.getQuantity();
+            entry.costBasis = row.getCostBasis();
+            entry.lastPrice = row.getLastPrice();
+            book.bySymbol.put(row.getSymbol(), entry);
+        }
+        logger.debug("Loaded {} positions for portfolio {} in {} us",
+            rows.size(), portfolioId, (System.nanoTime() - started) / 1_000);
+        return book;
+    }
+
+    private static final class Book {
+        final Map<String, Entry> bySymbol = new HashMap<>();
+        boolean dropped;
+
+        Entry entry(String symbol) {
+            return bySymbol.computeIfAbsent(symbol, s -> new Entry());
+        }
+    }
+
+    private static final class Entry {
+        long shares;
+        BigDecimal costBasis = BigDecimal.ZERO;
+        BigDecimal lastPrice = BigDecimal.ZERO;
+
+        /** Average cost: buys add at their price, sells release cost in proportion to the shares they close. */
+        void apply(TradeType type, int quantity, BigDecimal price) {
+            lastPrice = price;
+            if (type == TradeType.BUY) {
+                long before = shares;
+                shares += quantity;
+                if (before >= 0) {
+                    costBasis = costBasis.add(price.multiply(BigDecimal.valueOf(quantity)));
+                } else {
+                    // Covering a short; anything bought beyond it opens a long at this price
+                    costBasis = shares > 0 ? price.multiply(BigDecimal.valueOf(shares)) : BigDecimal.ZERO;
+                }
+            } else {
+                if (shares > 0) {
+                    long remaining = Math.max(0, shares - quantity);
+                    costBasis = costBasis.multiply(BigDecimal.valueOf(remaining))
+                        .divide(BigDecimal.valueOf(shares), 4, RoundingMode.HALF_UP);
+                }
+                shares -= quantity;
+                if (shares <= 0) costBasis = BigDecimal.ZERO;
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.InterceptableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.example.demo.dto.MarketQuote;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Price frames for /topic/prices subscribers, sent straight to each session
+ * rather than through the broker.
+ *
+ * A subscription names one symbol, /topic/prices/AAPL, and gets a quote
+ * object per frame as before, or several, /topic/prices/AAPL,GOOG,MSFT, and
+ * gets one frame holding an array of the quotes that changed. Producers only
+ * record the latest quote per symbol, which never blocks; every
+ * {@code intervalMillis} the flush thread serializes each changed quote once
+ * and hands each subscription one frame with its symbols.
+ *
+ * A session still working through its previous frames is skipped: its
+ * updates keep conflating to the latest price per symbol until it catches up,
+ * so a slow client costs a bounded amount of memory and sees fresh prices
+ * when it does. A session whose socket send buffer overflows anyway is
+ * disconnected by the transport (see WebSocketConfig).
+ */
+@Service
+public class PriceBroadcaster implements SmartLifecycle, ExecutorChannelInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(PriceBroadcaster.class);
+    static final String PRICES_TOPIC = "/topic/prices/";
+    /** Marks our frames on the outbound channel; not written to the STOMP frame. */
+    private static final String FRAME_HEADER = "priceFrame";
+
+    private final MessageChannel clientOutbound;
+    private final ObjectMapper objectMapper;
+    private final long intervalMillis;
+    private final ConcurrentHashMap<String, MarketQuote> latest = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Subscription>> watchers = new ConcurrentHashMap<>();
+    /** Sessions skipped while busy, retried at the next flush. Only touched by the flush thread. */
+    private final Set<Session> waiting = new HashSet<>();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong updatesConflated = new AtomicLong();
+
+    private ScheduledExecutorService flusher;
+
+    public PriceBroadcaster(@Qualifier("clientOutboundChannel") MessageChannel clientOutbound,
+                            ObjectMapper objectMapper,
+                            @Value("${market.broadcast.interval-ms:100}") long intervalMillis) {
+        this.clientOutbound = clientOutbound;
+        this.objectMapper = objectMapper;
+        this.intervalMillis = intervalMillis;
+        if (clientOutbound instanceof InterceptableChannel channel) channel.addInterceptor(this);
+    }
+
+    /** The symbols a /topic/prices destination names; empty for any other destination. */
+    static List<String> symbolsOf(String destination) {
+        if (destination == null || !destination.startsWith(PRICES_TOPIC)) return List.of();
+        return Arrays.stream(destination.substring(PRICES_TOPIC.length()).split(","))
+            .map(String::trim).filter(s -> !s.isEmpty()).distinct().toList();
+    }
+
+    /** Records the symbol's latest price for the next flush, replacing any not yet sent. */
+    public void offer(String symbol, BigDecimal price) {
+        if (latest.put(symbol, new MarketQuote(symbol, price.doubleValue(), Instant.now())) != null) {
+            updatesConflated.incrementAndGet();
+        }
+    }
+
+    /** Sends every subscription that has changed quotes its frame. Only one thread may flush at a time. */
+    public void flush() {
+        Map<String, byte[]> changed = new HashMap<>();
+        for (String symbol : latest.keySet()) {
+            MarketQuote quote = latest.remove(symbol);
+            if (quote == null) continue;
+            try {
+                changed.put(symbol, objectMapper.writeValueAsBytes(quote));
+            } catch (JsonProcessingException e) {
+                logger.warn("Could not serialize quote for {}", symbol, e);
+            }
+        }
+        Set<Session> due = new HashSet<>(waiting);
+        waiting.clear();
+        changed.forEach((symbol, json) -> {
+            Set<Subscription> subscriptions = watchers.get(symbol);
+            if (subscriptions == null) return;
+            for (Subscription subscription : subscriptions) {
+                synchronized (subscription.session) {
+                    if (subscription.pending.put(symbol, json) != null) updatesConflated.incrementAndGet();
+                }
+                due.add(subscription.session);
+            }
+        });
+        for (Session session : due) {
+            send(session);
+        }
+    }
+
+    private void send(Session session) {
+        List<Message<byte[]>> frames = new ArrayList<>();
+        synchronized (session) {
+            if (session.closed) return;
+            if (session.inFlight > 0) {
+                waiting.add(session);
+                return;
+            }
+            for (Subscription subscription : session.subscriptions.values()) {
+                if (subscription.pending.isEmpty()) continue;
+                frames.add(frame(session.id, subscription));
+                subscription.pending.clear();
+            }
+            session.inFlight += frames.size();
+        }
+        for (Message<byte[]> frame : frames) {
+            clientOutbound.send(frame);
+        }
+        framesSent.addAndGet(frames.size());
+    }
+
+    private static Message<byte[]> frame(String sessionId, Subscription subscription) {
+        byte[] payload;
+        if (subscription.symbols.size() == 1) {
+            payload = subscription.pending.values().iterator().next();
+        } else {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write('[');
+            boolean first = true;
+            for (byte[] json : subscription.pending.values()) {
+                if (!first) out.write(',');
+                out.writeBytes(json);
+                first = false;
+            }
+            out.write(']');
+            payload = out.toByteArray();
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscription.id);
+        headers.setDestination(subscription.destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setHeader(FRAME_HEADER, Boolean.TRUE);
+        return MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+    }
+
+    /** A frame of ours has been handed to the session's socket, or failed; the session can take more. */
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (!Boolean.TRUE.equals(message.getHeaders().get(FRAME_HEADER))) return;
+        Session session = sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (session == null) return;
+        synchronized (session) {
+            session.inFlight--;
+        }
+    }
+
+    public long framesSent() {
+        return framesSent.get();
+    }
+
+    /** Price updates replaced by a newer one before they were sent. */
+    public long updatesConflated() {
+        return updatesConflated.get();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        List<String> symbols = symbolsOf(headers.getDestination());
+        if (symbols.isEmpty() || headers.getSessionId() == null || headers.getSubscriptionId() == null) return;
+        Session session = sessions.computeIfAbsent(headers.getSessionId(), Session::new);
+        Subscription subscription = new Subscription(session, headers.getSubscriptionId(), headers.getDestination(), symbols);
+        Subscription replaced;
+        synchronized (session) {
+            if (session.closed) return;
+            replaced = session.subscriptions.put(subscription.id, subscription);
+        }
+        if (replaced != null) unwatch(replaced);
+        for (String symbol : symbols) {
+            watchers.computeIfAbsent(symbol, s -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Session session = headers.getSessionId() == null ? null : sessions.get(headers.getSessionId());
+        if (session == null) return;
+        Subscription removed;
+        synchronized (session) {
+            removed = session.subscriptions.remove(headers.getSubscriptionId());
+        }
+        if (removed != null) unwatch(removed);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Session session = sessions.remove(event.getSessionId());
+        if (session == null) return;
+        List<Subscription> removed;
+        synchronized (session) {
+            session.closed = true;
+            removed = new ArrayList<>(session.subscriptions.values());
+            session.subscriptions.clear();
+        }
+        removed.forEach(this::unwatch);
+    }
+
+    private void unwatch(Subscription subscription) {
+        for (String symbol : subscription.symbols) {
+            watchers.computeIfPresent(symbol, (s, subscriptions) -> {
+                subscriptions.remove(subscription);
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (flusher != null) return;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "price-broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                logger.warn("Price flush failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (flusher == null) return;
+        flusher.shutdownNow();
+        flusher = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+
+    private static final class Session {
+        final String id;
+        final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+        int inFlight;
+        boolean closed;
+
+        Session(String id) {
+            this.id = id;
+        }
+    }
+
+    /** Guarded by its session's lock, except for the immutable fields. */
+    private static final class Subscription {
+        final Session session;
+        final String id;
+        final String destination;
+        final List<String> symbols;
+        /** Latest serialized quote per symbol since this subscription's last frame. */
+        final Map<String, byte[]> pending = new LinkedHashMap<>();
+
+        Subscription(Session session, String id, String destination, List<String> symbols) {
+            this.session = session;
+            this.id = id;
+            this.destination = destination;
+            this.symbols = symbols;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.service;
+
+/**
+ * All resting orders at one price, in arrival order. Orders are linked
+ * intrusively so the head can be filled and unlinked in O(1), and the level
+ * keeps a running total so depth never has to walk the queue. Levels are
+ * recycled by their {@link BookSide} once they empty.
+ */
+public class PriceLevel {
+    private long price;
+    private OrderNode head;
+    private OrderNode tail;
+    private long totalQuantity;
+    private int orderCount;
+
+    PriceLevel reset(long price) {
+        this.price = price;
+        head = null;
+        tail = null;
+        totalQuantity = 0;
+        orderCount = 0;
+        return this;
+    }
+
+    public long getPrice() { return price; }
+    public long getTotalQuantity() { return totalQuantity; }
+    public int getOrderCount() { return orderCount; }
+    public boolean isEmpty() { return head == null; }
+
+    OrderNode head() { return head; }
+
+    void append(OrderNode node) {
+        node.level = this;
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) head = node;
+        else tail.next = node;
+        tail = node;
+        totalQuantity += node.quantity;
+        orderCount++;
+    }
+
+    /**
+     * Takes {@code quantity} off an order in this level. Returns true once the
+     * order is exhausted and has been unlinked, so the caller can recycle it.
+     */
+    boolean fill(OrderNode node, int quantity) {
+        node.quantity -= quantity;
+        totalQuantity -= quantity;
+        if (node.quantity > 0) return false;
+        unlink(node);
+        return true;
+    }
+
+    /** Lowers a resting order's quantity without moving it in the queue. */
+    void reduce(OrderNode node, int newQuantity) {
+        totalQuantity -= node.quantity - newQuantity;
+        node.quantity = newQuantity;
+    }
+
+    void unlink(OrderNode node) {
+        if (node.prev == null) head = node.next;
+        else node.prev.next = node.next;
+        if (node.next == null) tail = node.prev;
+        else node.next.prev = node.prev;
+        totalQuantity -= node.quantity;
+        orderCount--;
+        node.prev = null;
+        node.next = null;
+        node.level = null;
+    }
+}
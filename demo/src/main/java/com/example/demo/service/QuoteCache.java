@@ -0,0 +1,196 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * The one place quotes are fetched from the quote API and cached.
+ *
+ * A quote is fresh for {@code ttl}; after that, and up to {@code maxStale},
+ * it is still served while a background refresh runs (stale-while-revalidate),
+ * so readers never wait on the API for a symbol they have seen recently.
+ * Loads are single-flight: however many readers miss or go stale on a symbol
+ * at once, one call to the API is made and they all share its result. The
+ * cache holds at most {@code maxSymbols} symbols, evicting the least recently
+ * read.
+ *
+ * When there is no usable quote and the API has none either, readers get the
+ * {@link MarketPrices} price instead.
+ */
+@Service
+public class QuoteCache implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(QuoteCache.class);
+
+    private record Quote(BigDecimal price, long fetchedAt) { }
+
+    private final Function<String, BigDecimal> loader;
+    private final MarketPrices fallback;
+    private final Executor fetcher;
+    private final LongSupplier clock;
+    private final long ttlMillis;
+    private final long maxStaleMillis;
+    private final Map<String, Quote> quotes;
+    private final ConcurrentHashMap<String, CompletableFuture<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QuoteCache(MarketDataProvider provider,
+                      MarketPrices fallback,
+                      @Value("${market.quotes.ttl-ms:300000}") long ttlMillis,
+                      @Value("${market.quotes.max-stale-ms:3600000}") long maxStaleMillis,
+                      @Value("${market.quotes.max-symbols:1000}") int maxSymbols,
+                      @Value("${market.quotes.fetch-threads:64}") int fetchThreads) {
+        this(provider::fetchPrice, fallback, Executors.newFixedThreadPool(fetchThreads, r -> {
+            Thread thread = new Thread(r, "quote-fetch");
+            thread.setDaemon(true);
+            return thread;
+        }), System::currentTimeMillis, ttlMillis, maxStaleMillis, maxSymbols);
+    }
+
+    public QuoteCache(Function<String, BigDecimal> loader, MarketPrices fallback, Executor fetcher,
+                      LongSupplier clock, long ttlMillis, long maxStaleMillis, int maxSymbols) {
+        this.loader = loader;
+        this.fallback = fallback;
+        this.fetcher = fetcher;
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.quotes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Quote> eldest) {
+                return size() > maxSymbols;
+            }
+        };
+    }
+
+    /** The symbol's price: cached if fresh or usably stale, otherwise loaded now, otherwise the fallback. */
+    public BigDecimal price(String symbol) {
+        Quote quote = cached(symbol);
+        if (isUsable(symbol, quote)) return quote.price();
+        BigDecimal loaded = load(symbol, Runnable::run).join();
+        return loaded != null ? loaded : lastKnown(symbol, quote);
+    }
+
+    /**
+     * Prices for many symbols at once. Symbols that need loading are loaded
+     * concurrently on the fetch pool, so the wait is about one API round trip
+     * however many there are, and never longer than {@code deadline}: a
+     * symbol still loading by then gets its last known price. Completes off
+     * the caller's thread, so a web request can release its thread meanwhile.
+     */
+    public CompletableFuture<Map<String, BigDecimal>> prices(Collection<String> symbols, Duration deadline) {
+        Map<String, BigDecimal> prices = new LinkedHashMap<>();
+        Map<String, CompletableFuture<BigDecimal>> loading = new LinkedHashMap<>();
+        for (String symbol : symbols) {
+            Quote quote = cached(symbol);
+            if (isUsable(symbol, quote)) {
+                prices.put(symbol, quote.price());
+            } else {
+                prices.put(symbol, null); // keeps the caller's order
+                loading.put(symbol, load(symbol, fetcher));
+            }
+        }
+        if (loading.isEmpty()) return CompletableFuture.completedFuture(prices);
+        return CompletableFuture.allOf(loading.values().toArray(CompletableFuture[]::new))
+            .completeOnTimeout(null, deadline.toMillis(), TimeUnit.MILLISECONDS)
+            .thenApply(done -> {
+                loading.forEach((symbol, load) -> {
+                    BigDecimal loaded = load.getNow(null);
+                    prices.put(symbol, loaded != null ? loaded : lastKnown(symbol, cached(symbol)));
+                });
+                return prices;
+            });
+    }
+
+    /**
+     * Loads the symbol now, whatever the cache holds, joining a load already
+     * in flight. Returns null if the API has no price for it.
+     */
+    public BigDecimal refresh(String symbol) {
+        return load(symbol, Runnable::run).join();
+    }
+
+    /** Milliseconds since the symbol was last loaded, or Long.MAX_VALUE if it is not cached. */
+    public long ageMillis(String symbol) {
+        Quote quote = cached(symbol);
+        return quote == null ? Long.MAX_VALUE : clock.getAsLong() - quote.fetchedAt();
+    }
+
+    /** Stores a price pushed by a streaming provider, as if it had just been loaded. */
+    public void accept(String symbol, BigDecimal price) {
+        synchronized (quotes) {
+            quotes.put(symbol, new Quote(price, clock.getAsLong()));
+        }
+    }
+
+    public int size() {
+        synchronized (quotes) {
+            return quotes.size();
+        }
+    }
+
+    private Quote cached(String symbol) {
+        synchronized (quotes) {
+            return quotes.get(symbol);
+        }
+    }
+
+    /** True if {@code quote} can be served; starts a background refresh if it is stale. */
+    private boolean isUsable(String symbol, Quote quote) {
+        long age = quote == null ? Long.MAX_VALUE : clock.getAsLong() - quote.fetchedAt();
+        if (age <= ttlMillis) return true;
+        if (age > maxStaleMillis) return false;
+        load(symbol, fetcher);
+        return true;
+    }
+
+    private BigDecimal lastKnown(String symbol, Quote quote) {
+        return quote != null ? quote.price() : fallback.price(symbol);
+    }
+
+    /** Starts a load of {@code symbol} on {@code executor}, unless one is already in flight. */
+    private CompletableFuture<BigDecimal> load(String symbol, Executor executor) {
+        CompletableFuture<BigDecimal> mine = new CompletableFuture<>();
+        CompletableFuture<BigDecimal> running = inFlight.putIfAbsent(symbol, mine);
+        if (running != null) return running;
+        executor.execute(() -> {
+            BigDecimal price = null;
+            try {
+                price = loader.apply(symbol);
+                if (price != null) {
+                    synchronized (quotes) {
+                        quotes.put(symbol, new Quote(price, clock.getAsLong()));
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Quote load for {} failed", symbol, e);
+            } finally {
+                inFlight.remove(symbol, mine);
+                mine.complete(price);
+            }
+        });
+        return mine;
+    }
+
+    @Override
+    public void destroy() {
+        if (fetcher instanceof ExecutorService service) service.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+/**
+ * How much each symbol's quote is wanted: live WebSocket subscriptions naming
+ * it on /topic/prices (see {@link PriceBroadcaster}), plus REST reads that decay with a configurable
+ * half-life. Used to spend the quote API quota where people are looking.
+ */
+@Service
+public class QuoteDemand {
+    /** One live subscriber counts for as much as this many recent REST reads. */
+    static final double SUBSCRIBER_WEIGHT = 10;
+
+    private final LongSupplier clock;
+    private final double decayPerMilli;
+    private final ConcurrentHashMap<String, Integer> subscribers = new ConcurrentHashMap<>();
+    /** session id -> (subscription id -> symbols) */
+    private final ConcurrentHashMap<String, Map<String, List<String>>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Reads> reads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QuoteDemand(@Value("${market.refresh.demand-half-life-ms:300000}") long halfLifeMillis) {
+        this(System::currentTimeMillis, halfLifeMillis);
+    }
+
+    public QuoteDemand(LongSupplier clock, long halfLifeMillis) {
+        this.clock = clock;
+        this.decayPerMilli = Math.log(2) / halfLifeMillis;
+    }
+
+    /** Records a REST read of the symbol's quote. */
+    public void recordRead(String symbol) {
+        reads.computeIfAbsent(symbol, s -> new Reads()).add(clock.getAsLong(), decayPerMilli);
+    }
+
+    /** Higher for symbols more people are watching now. */
+    public double priority(String symbol) {
+        Reads r = reads.get(symbol);
+        double recentReads = r == null ? 0 : r.score(clock.getAsLong(), decayPerMilli);
+        return subscribers.getOrDefault(symbol, 0) * SUBSCRIBER_WEIGHT + recentReads;
+    }
+
+    public int subscriberCount(String symbol) {
+        return subscribers.getOrDefault(symbol, 0);
+    }
+
+    /** Symbols with at least one live subscriber. */
+    public Set<String> subscribedSymbols() {
+        return Set.copyOf(subscribers.keySet());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        List<String> symbols = PriceBroadcaster.symbolsOf(headers.getDestination());
+        if (symbols.isEmpty() || headers.getSessionId() == null) return;
+        Map<String, List<String>> subscriptions = sessions.computeIfAbsent(headers.getSessionId(), id -> new HashMap<>());
+        synchronized (subscriptions) {
+            List<String> previous = subscriptions.put(headers.getSubscriptionId(), symbols);
+            if (previous != null) previous.forEach(this::release);
+        }
+        symbols.forEach(symbol -> subscribers.merge(symbol, 1, Integer::sum));
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, List<String>> subscriptions = headers.getSessionId() == null ? null : sessions.get(headers.getSessionId());
+        if (subscriptions == null) return;
+        synchronized (subscriptions) {
+            List<String> symbols = subscriptions.remove(headers.getSubscriptionId());
+            if (symbols != null) symbols.forEach(this::release);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, List<String>> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions == null) return;
+        synchronized (subscriptions) {
+            subscriptions.values().forEach(symbols -> symbols.forEach(this::release));
+            subscriptions.clear();
+        }
+    }
+
+    private void release(String symbol) {
+        subscribers.computeIfPresent(symbol, (s, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /** An exponentially decaying count of reads. */
+    private static final class Reads {
+        private double score;
+        private long at;
+
+        synchronized void add(long now, double decayPerMilli) {
+            score = score(now, decayPerMilli) + 1;
+            at = now;
+        }
+
+        synchronized double score(long now, double decayPerMilli) {
+            return score * Math.exp(-decayPerMilli * Math.max(0, now - at));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * A local market for load testing with no network: {@code symbols} prices
+ * following correlated geometric Brownian motion, ticking
+ * {@code ticksPerSecond} times a second in total, round-robin across the
+ * symbols.
+ *
+ * Each symbol's Brownian motion is {@code sqrt(rho) M + sqrt(1 - rho) W_i}:
+ * one market factor M shared by every symbol plus its own W_i, so any two
+ * symbols' log returns have correlation {@code rho}. M is advanced once per
+ * batch of ticks and each symbol takes the increment of M since its own last
+ * tick, which keeps that correlation exact even though symbols tick at
+ * different times. {@code timeScale} is how many seconds of trading time pass
+ * per second of wall time, so moves are visible at useful rates.
+ *
+ * The named {@code seedSymbols} come first and start at their
+ * {@link MarketPrices} reference prices; the rest are named SIM00001 and up.
+ */
+@Service
+@ConditionalOnProperty(name = "market.provider", havingValue = "simulated")
+public class SimulatedMarketData implements MarketDataProvider, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedMarketData.class);
+    /** 252 trading days of 6.5 hours; drift and volatility are per year of these. */
+    private static final double SECONDS_PER_YEAR = 252 * 6.5 * 3600;
+    private static final int PRICE_SCALE = 4;
+
+    private final String[] symbols;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final AtomicLongArray prices;      // double bits, so fetchPrice can read from any thread
+    private final double[] lastFactor;
+    private final double[] lastYears;
+    private final double drift;
+    private final double volatility;
+    private final double marketWeight;
+    private final double ownWeight;
+    private final double timeScale;
+    private final int ticksPerSecond;
+    private final SplittableRandom random;
+    private final AtomicLong ticks = new AtomicLong();
+
+    private double factor;
+    private double years;
+    private int next;
+    private volatile Thread feed;
+
+    @Autowired
+    public SimulatedMarketData(@Value("${market.simulator.seed-symbols:AAPL,GOOG,MSFT,TSLA,AMZN}") List<String> seedSymbols,
+                               @Value("${market.simulator.symbols:2000}") int symbols,
+                               @Value("${market.simulator.ticks-per-second:10000}") int ticksPerSecond,
+                               @Value("${market.simulator.drift:0.05}") double drift,
+                               @Value("${market.simulator.volatility:0.3}") double volatility,
+                               @Value("${market.simulator.correlation:0.5}") double correlation,
+                               @Value("${market.simulator.time-scale:60}") double timeScale,
+                               @Value("${market.simulator.seed:42}") long seed) {
+        List<String> universe = new ArrayList<>(seedSymbols);
+        for (int i = 1; universe.size() < symbols; i++) {
+            universe.add(String.format("SIM%05d", i));
+        }
+        this.symbols = universe.toArray(String[]::new);
+        this.prices = new AtomicLongArray(this.symbols.length);
+        for (int i = 0; i < this.symbols.length; i++) {
+            index.put(this.symbols[i], i);
+            prices.set(i, Double.doubleToRawLongBits(MarketPrices.referencePrice(this.symbols[i]).doubleValue()));
+        }
+        this.lastFactor = new double[this.symbols.length];
+        this.lastYears = new double[this.symbols.length];
+        this.drift = drift;
+        this.volatility = volatility;
+        this.marketWeight = Math.sqrt(correlation);
+        this.ownWeight = Math.sqrt(1 - correlation);
+        this.timeScale = timeScale;
+        this.ticksPerSecond = ticksPerSecond;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public BigDecimal fetchPrice(String symbol) {
+        Integer i = index.get(symbol);
+        return i == null ? null : toPrice(Double.longBitsToDouble(prices.get(i)));
+    }
+
+    /** Unlimited: the simulator has no quota. */
+    @Override
+    public int availableCalls() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized void stream(BiConsumer<String, BigDecimal> sink) {
+        if (feed != null) return;
+        feed = new Thread(() -> run(sink), "simulated-market");
+        feed.setDaemon(true);
+        feed.start();
+        logger.info("Simulating {} symbols at {} ticks/s", symbols.length, ticksPerSecond);
+    }
+
+    public List<String> symbols() {
+        return List.of(symbols);
+    }
+
+    /** Ticks generated so far. */
+    public long ticks() {
+        return ticks.get();
+    }
+
+    /**
+     * Advances the market by {@code elapsedSeconds} of trading time and ticks
+     * the next {@code count} symbols, handing each new price to {@code sink}.
+     * Only one thread may generate at a time.
+     */
+    public void generate(int count, double elapsedSeconds, BiConsumer<String, BigDecimal> sink) {
+        double dt = elapsedSeconds / SECONDS_PER_YEAR;
+        years += dt;
+        factor += Math.sqrt(dt) * random.nextGaussian();
+        for (int n = 0; n < count; n++) {
+            int i = next;
+            next = next + 1 == symbols.length ? 0 : next + 1;
+            double since = years - lastYears[i];
+            double w = marketWeight * (factor - lastFactor[i]) + ownWeight * Math.sqrt(since) * random.nextGaussian();
+            double price = Double.longBitsToDouble(prices.get(i))
+                * Math.exp((drift - volatility * volatility / 2) * since + volatility * w);
+            prices.set(i, Double.doubleToRawLongBits(price));
+            lastFactor[i] = factor;
+            lastYears[i] = years;
+            sink.accept(symbols[i], toPrice(price));
+        }
+        ticks.addAndGet(count);
+    }
+
+    private void run(BiConsumer<String, BigDecimal> sink) {
+        long start = System.nanoTime();
+        long last = start;
+        long emitted = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            long due = (now - start) / 1_000 * ticksPerSecond / 1_000_000;
+            // a sink that can't keep up costs ticks, not an ever-growing backlog
+            if (due - emitted > ticksPerSecond) emitted = due - ticksPerSecond;
+            int batch = (int) Math.min(due - emitted, Math.max(1, ticksPerSecond / 100));
+            if (batch == 0) {
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+            try {
+                generate(batch, (now - last) / 1e9 * timeScale, sink);
+            } catch (RuntimeException e) {
+                logger.warn("Simulated tick failed", e);
+            }
+            emitted += batch;
+            last = now;
+        }
+    }
+
+    private static BigDecimal toPrice(double price) {
+        return BigDecimal.valueOf(price).setScale(PRICE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public void destroy() {
+        Thread running = feed;
+        if (running != null) running.interrupt();
+    }
+}
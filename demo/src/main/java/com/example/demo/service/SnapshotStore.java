@@ -0,0 +1,186 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Binary snapshots of every order book, each tagged with the
+ * {@link OrderJournal} position it is consistent with. Restart loads the newest
+ * snapshot that passes its checksum and replays the journal from that
+ * position, instead of from the beginning.
+ *
+ * A file holds the journal position, the order id watermark, the symbol table
+ * and one block per matching lane from {@link OrderMatchingService#snapshotLane},
+ * followed by a CRC32 of everything before it. Files are written to a
+ * temporary name and renamed, and only the newest {@value #RETAINED} are kept.
+ */
+@Service
+public class SnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x4F42534E; // "OBSN"
+    private static final int VERSION = 1;
+    static final int RETAINED = 2;
+
+    private final Path dir;
+    private final AtomicLong lastSizeBytes = new AtomicLong();
+    private final AtomicLong lastLoadMillis = new AtomicLong();
+
+    @Autowired
+    public SnapshotStore(@Value("${orders.snapshot.dir:}") String dir, MeterRegistry registry) throws IOException {
+        this(dir.isBlank() ? null : Path.of(dir), registry);
+    }
+
+    public SnapshotStore(Path dir, MeterRegistry registry) throws IOException {
+        this.dir = dir;
+        if (dir != null) Files.createDirectories(dir);
+        Gauge.builder("orders.snapshot.size", lastSizeBytes, AtomicLong::get)
+            .description("Size of the most recent order book snapshot")
+            .baseUnit("bytes")
+            .register(registry);
+        TimeGauge.builder("orders.snapshot.load.time", lastLoadMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+            .description("Time taken to load the order book snapshot at startup")
+            .register(registry);
+    }
+
+    public static SnapshotStore disabled() {
+        try {
+            return new SnapshotStore((Path) null, new SimpleMeterRegistry());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Writes a snapshot of {@code lanes} taken at {@code journalPosition} and
+     * prunes old ones. Returns the journal position of the oldest snapshot
+     * still kept, before which the journal is no longer needed.
+     */
+    public long write(long journalPosition, OrderMatchingService matcher, byte[][] lanes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(journalPosition);
+        out.writeLong(matcher.orderIdWatermark());
+        int symbolLimit = matcher.symbolIdLimit();
+        out.writeInt(symbolLimit);
+        for (int id = 0; id < symbolLimit; id++) {
+            String symbol = matcher.symbol(id);
+            out.writeUTF(symbol == null ? "" : symbol);
+        }
+        out.writeInt(lanes.length);
+        for (byte[] lane : lanes) {
+            out.writeInt(lane.length);
+            out.write(lane);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path target = dir.resolve(String.format("book-%016x.snapshot", journalPosition));
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSizeBytes.set(bytes.size());
+        logger.info("Wrote order book snapshot {} ({} bytes)", target.getFileName(), bytes.size());
+
+        List<Path> snapshots = snapshots();
+        for (int i = 0; i < snapshots.size() - RETAINED; i++) Files.delete(snapshots.get(i));
+        return positionOf(snapshots.get(Math.max(0, snapshots.size() - RETAINED)));
+    }
+
+    /**
+     * Restores the newest readable snapshot into an empty {@code matcher}.
+     * Returns the journal position to replay from, or 0 if there was none.
+     */
+    public long loadLatest(OrderMatchingService matcher) throws IOException {
+        if (dir == null) return 0;
+        List<Path> snapshots = snapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path snapshot = snapshots.get(i);
+            long started = System.nanoTime();
+            byte[] bytes = Files.readAllBytes(snapshot);
+            if (!checksumMatches(bytes)) {
+                logger.warn("Skipping corrupt order book snapshot {}", snapshot.getFileName());
+                continue;
+            }
+            long position = restore(new DataInputStream(new ByteArrayInputStream(bytes)), matcher);
+            lastSizeBytes.set(bytes.length);
+            lastLoadMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            logger.info("Loaded order book snapshot {} ({} bytes) in {} ms",
+                snapshot.getFileName(), bytes.length, lastLoadMillis.get());
+            return position;
+        }
+        return 0;
+    }
+
+    private static long restore(DataInputStream in, OrderMatchingService matcher) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IllegalStateException("Not an order book snapshot");
+        }
+        long position = in.readLong();
+        matcher.advanceOrderIds(in.readLong());
+        int symbolLimit = in.readInt();
+        for (int id = 0; id < symbolLimit; id++) {
+            String symbol = in.readUTF();
+            if (!symbol.isEmpty()) matcher.restoreSymbol(symbol, id);
+        }
+        int lanes = in.readInt();
+        for (int lane = 0; lane < lanes; lane++) {
+            in.readInt(); // block length; lanes are read in full
+            matcher.restoreLane(in);
+        }
+        return position;
+    }
+
+    private static boolean checksumMatches(byte[] bytes) {
+        if (bytes.length < 8) return false;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        long stored = 0;
+        for (int i = bytes.length - 8; i < bytes.length; i++) stored = (stored << 8) | (bytes[i] & 0xFF);
+        return stored == crc.getValue();
+    }
+
+    private static long positionOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseUnsignedLong(name.substring("book-".length(), name.length() - ".snapshot".length()), 16);
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                .filter(p -> p.getFileName().toString().matches("book-[0-9a-f]{16}\\.snapshot"))
+                .sorted()
+                .toList();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns ticker symbols to dense int ids so the matching core can index
+ * books by array slot and carry symbols as primitives. Lookups of known
+ * symbols are lock-free; only a first sighting takes the lock.
+ */
+public final class SymbolTable {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[64];
+    private int count;
+
+    public int intern(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : register(symbol);
+    }
+
+    /** Id of a known symbol, or -1 if it has never been interned. */
+    public int idOf(String symbol) {
+        Integer id = ids.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    public String symbol(int id) {
+        return symbols[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /** One past the highest id in use; ids below it may be unused after {@link #internAs}. */
+    public synchronized int idLimit() {
+        return count;
+    }
+
+    /**
+     * Registers {@code symbol} under a specific id, as recorded by an earlier
+     * run. Used by journal replay, before any live symbols are interned, so ids
+     * stay stable across restarts.
+     */
+    public synchronized void internAs(String symbol, int id) {
+        Integer existing = ids.get(symbol);
+        if (existing != null) {
+            if (existing != id) throw new IllegalStateException(symbol + " is already interned as " + existing);
+            return;
+        }
+        String[] current = symbols;
+        if (id >= current.length) current = Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+        if (current[id] != null) throw new IllegalStateException("Symbol id " + id + " is already " + current[id]);
+        current[id] = symbol;
+        symbols = current;
+        ids.put(symbol, id);
+        count = Math.max(count, id + 1);
+    }
+
+    private synchronized int register(String symbol) {
+        Integer existing = ids.get(symbol);
+        if (existing != null) return existing;
+        int id = count++;
+        String[] current = symbols;
+        if (id >= current.length) current = Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+        current[id] = symbol;
+        symbols = current;
+        ids.put(symbol, id);
+        return id;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point price conversion for the matching engine. Prices are held as a
+ * whole number of cents so books can compare and key levels without BigDecimal.
+ */
+public final class Ticks {
+    public static final int SCALE = 2;
+
+    private Ticks() {}
+
+    /**
+     * Buy limits round down and sell limits round up, so an order priced finer
+     * than a tick is never executed at a worse price than the client asked for.
+     */
+    public static long toTicks(BigDecimal price, boolean buy) {
+        return price.setScale(SCALE, buy ? RoundingMode.FLOOR : RoundingMode.CEILING)
+            .unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toPrice(long ticks) {
+        return BigDecimal.valueOf(ticks, SCALE);
+    }
+}
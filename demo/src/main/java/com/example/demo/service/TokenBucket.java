@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket: holds up to {@code capacity} tokens and refills
+ * continuously at {@code capacity} per {@code period}. Used to keep calls to
+ * a rate-limited API inside its quota.
+ */
+public class TokenBucket {
+    private final int capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(int capacity, Duration period, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.tokensPerNano = (double) capacity / period.toNanos();
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /** Takes a token if one is available. */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /** Whole tokens available right now. */
+    public synchronized int available() {
+        refill();
+        return (int) tokens;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
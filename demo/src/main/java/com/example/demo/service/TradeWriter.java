@@ -0,0 +1,297 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entity.PortfolioValueHistory;
+import com.example.demo.entity.TradeType;
+import com.example.demo.entity.Transaction;
+
+/**
+ * Write-behind persistence for fills. The matcher hands fills over through a
+ * bounded queue and moves on; a single writer thread drains whatever has
+ * queued up and stores it as one JDBC batch of transactions, the matching
+ * updates to {@code positions}, and one value snapshot per affected portfolio
+ * along with its rollups, all in a single database transaction. Row ids come
+ * from the entities' own sequences through {@link IdBlocks}. Once that
+ * commits, the snapshots are also appended to the {@link ValueSeriesStore};
+ * that append is best effort, since the batch is already stored.
+ *
+ * When the queue is full, {@link #submit} blocks, which pushes back on the
+ * persist stage of the order pipeline rather than on matching. On shutdown the
+ * writer drains the queue before stopping, after the pipeline has drained.
+ *
+ * The fills have already been acknowledged and are not replayed from the
+ * journal, so a batch that fails to write is retried with exponential backoff
+ * up to {@code maxAttempts} times. If it still fails, it is appended to the
+ * dead-letter file, one CSV line per fill, so it can be re-entered once the
+ * cause is fixed. A batch that breaks a constraint is not retried as it is
+ * but split in halves, recursively, so only the offending fills are parked
+ * and the rest of the batch is written.
+ */
+@Service
+public class TradeWriter implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(TradeWriter.class);
+
+    private static final String INSERT_TRANSACTION =
+        "INSERT INTO transactions (id, portfolio_id, stock_symbol, quantity, price, type, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_VALUE_SNAPSHOT =
+        "INSERT INTO portfolio_value_history (id, portfolio_id, timestamp, value) VALUES (?, ?, ?, ?)";
+
+    /** One side of a fill, as it will be stored in the transactions table. */
+    public record TradeFill(long portfolioId, String symbol, TradeType type, int quantity,
+                            BigDecimal price, Instant timestamp) { }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdBlocks idBlocks;
+    private final Upserts upserts;
+    private final TransactionTemplate transactionTemplate;
+    private final PositionLedger ledger;
+    private final PortfolioValueRollups rollups;
+    private final ValueSeriesStore series;
+    private final OrderLatency latency;
+    private final BlockingQueue<TradeFill> queue;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final Path deadLetterFile;
+    private final AtomicLong seriesFailures = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public TradeWriter(JdbcTemplate jdbcTemplate,
+                       IdBlocks idBlocks,
+                       Upserts upserts,
+                       PlatformTransactionManager transactionManager,
+                       PositionLedger ledger,
+                       PortfolioValueRollups rollups,
+                       ValueSeriesStore series,
+                       OrderLatency latency,
+                       @Value("${trades.write-behind.capacity:65536}") int capacity,
+                       @Value("${trades.write-behind.batch-size:500}") int maxBatchSize,
+                       @Value("${trades.write-behind.max-attempts:5}") int maxAttempts,
+                       @Value("${trades.write-behind.retry-backoff-ms:200}") long retryBackoffMillis,
+                       @Value("${trades.write-behind.dead-letter-file:}") String deadLetterFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idBlocks = idBlocks;
+        this.upserts = upserts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ledger = ledger;
+        this.rollups = rollups;
+        this.series = series;
+        this.latency = latency;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.deadLetterFile = deadLetterFile == null || deadLetterFile.isBlank() ? null : Path.of(deadLetterFile);
+    }
+
+    /** Queues a fill for persistence, waiting for room if the writer has fallen behind. */
+    public void submit(TradeFill fill) {
+        try {
+            queue.put(fill);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing fill for " + fill.portfolioId(), e);
+        }
+    }
+
+    public int backlog() {
+        return queue.size();
+    }
+
+    /** Committed snapshots the series store failed to take; the database still has them. */
+    public long seriesFailures() {
+        return seriesFailures.get();
+    }
+
+    private void run() {
+        List<TradeFill> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TradeFill first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeWithRetries(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeWithRetries(List<TradeFill> batch) {
+        long backoff = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = System.nanoTime();
+                write(batch);
+                latency.recordSince(OrderLatency.Stage.DB_WRITE, start);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Some row can never be written as it is: split the batch until it is isolated
+                if (batch.size() == 1) {
+                    logger.error("Fill for portfolio {} violates a constraint", batch.get(0).portfolioId(), e);
+                    deadLetter(batch);
+                    return;
+                }
+                int half = batch.size() / 2;
+                writeWithRetries(batch.subList(0, half));
+                writeWithRetries(batch.subList(half, batch.size()));
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    logger.error("Failed to persist batch of {} fills after {} attempts", batch.size(), attempt, e);
+                    deadLetter(batch);
+                    return;
+                }
+                logger.warn("Failed to persist batch of {} fills (attempt {} of {}), retrying in {} ms: {}",
+                    batch.size(), attempt, maxAttempts, backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deadLetter(batch);
+                return;
+            }
+            backoff *= 2;
+        }
+    }
+
+    /** Appends the batch to the dead-letter file and forces it to disk; logs every fill if that fails too. */
+    private void deadLetter(List<TradeFill> batch) {
+        StringBuilder lines = new StringBuilder();
+        for (TradeFill fill : batch) {
+            lines.append(fill.portfolioId()).append(',').append(fill.symbol()).append(',').append(fill.type())
+                .append(',').append(fill.quantity()).append(',').append(fill.price().toPlainString())
+                .append(',').append(fill.timestamp()).append('\n');
+        }
+        if (deadLetterFile != null) {
+            try {
+                if (deadLetterFile.getParent() != null) Files.createDirectories(deadLetterFile.getParent());
+                try (FileChannel channel = FileChannel.open(deadLetterFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) channel.write(bytes);
+                    channel.force(true);
+                }
+                logger.error("Parked {} unwritten fills in {}", batch.size(), deadLetterFile);
+                return;
+            } catch (IOException e) {
+                logger.error("Could not write dead-letter file {}", deadLetterFile, e);
+            }
+        }
+        logger.error("Unwritten fills:\n{}", lines);
+    }
+
+    void write(List<TradeFill> batch) {
+        List<PositionLedger.Fill> fills = new ArrayList<>(batch.size());
+        for (TradeFill fill : batch) {
+            fills.add(new PositionLedger.Fill(fill.portfolioId(), fill.symbol(), fill.type(), fill.quantity(), fill.price()));
+        }
+        List<PortfolioValueRollups.Snapshot> written = ledger.record(fills, () -> transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(INSERT_TRANSACTION, batch, batch.size(), (ps, fill) -> {
+                ps.setLong(1, idBlocks.next(Transaction.ID_SEQUENCE, Transaction.ID_BLOCK_SIZE));
+                ps.setLong(2, fill.portfolioId());
+                ps.setString(3, fill.symbol());
+                ps.setInt(4, fill.quantity());
+                ps.setBigDecimal(5, fill.price());
+                ps.setString(6, fill.type().name());
+                ps.setTimestamp(7, Timestamp.from(fill.timestamp()));
+            });
+            upserts.applyFills(fills);
+
+            // Coalesce: one snapshot per portfolio, valued from the ledger after the whole batch
+            Map<Long, Instant> touched = new LinkedHashMap<>();
+            for (TradeFill fill : batch) touched.put(fill.portfolioId(), fill.timestamp());
+            List<PortfolioValueRollups.Snapshot> snapshots = new ArrayList<>(touched.size());
+            for (Map.Entry<Long, Instant> entry : touched.entrySet()) {
+                snapshots.add(new PortfolioValueRollups.Snapshot(
+                    entry.getKey(), entry.getValue(), ledger.lastTradeValue(entry.getKey())));
+            }
+            jdbcTemplate.batchUpdate(INSERT_VALUE_SNAPSHOT, snapshots, snapshots.size(), (ps, snapshot) -> {
+                ps.setLong(1, idBlocks.next(PortfolioValueHistory.ID_SEQUENCE, PortfolioValueHistory.ID_BLOCK_SIZE));
+                ps.setLong(2, snapshot.portfolioId());
+                ps.setTimestamp(3, Timestamp.from(snapshot.timestamp()));
+                ps.setBigDecimal(4, snapshot.value());
+            });
+            rollups.record(snapshots);
+            return snapshots;
+        }));
+        // Committed: a series that cannot take a point must not send the batch round again
+        for (PortfolioValueRollups.Snapshot snapshot : written) {
+            try {
+                series.append(snapshot.portfolioId(), snapshot.timestamp(), snapshot.value());
+            } catch (RuntimeException e) {
+                seriesFailures.incrementAndGet();
+                logger.warn("Could not append value snapshot for portfolio {} to the series store",
+                    snapshot.portfolioId(), e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        writer = new Thread(this::run, "trade-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Flushes everything still queued before returning. */
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) logger.warn("Trade writer stopped with {} fills unwritten", queue.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Stops after the order pipeline, which stops at the default phase, so its last fills get written. */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+}
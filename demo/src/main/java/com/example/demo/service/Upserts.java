@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.entity.RollupResolution;
+import com.example.demo.entity.TradeType;
+import com.example.demo.repository.PortfolioValueRollupRepository;
+import com.example.demo.repository.PositionRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * The insert-or-update statements plain JDBC writers run, in the form the
+ * configured database understands: a standard MERGE on H2 and the other
+ * databases that have one, {@code INSERT ... ON DUPLICATE KEY UPDATE} on MySQL
+ * and MariaDB. Callers hand over rows and get the same result on either, in
+ * their own transaction.
+ */
+@Service
+public class Upserts {
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean onDuplicateKey;
+
+    @Autowired
+    public Upserts(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this(jdbcTemplate, entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getJdbcServices().getDialect() instanceof MySQLDialect);
+    }
+
+    /** {@code onDuplicateKey} selects the MySQL statements instead of MERGE. */
+    public Upserts(JdbcTemplate jdbcTemplate, boolean onDuplicateKey) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.onDuplicateKey = onDuplicateKey;
+    }
+
+    /** Applies {@code fills} to their positions in order, as one JDBC batch. */
+    public void applyFills(List<PositionLedger.Fill> fills) {
+        if (!onDuplicateKey) {
+            jdbcTemplate.batchUpdate(PositionRepository.APPLY_FILL, fills, fills.size(), (ps, fill) -> {
+                ps.setLong(1, fill.portfolioId());
+                ps.setString(2, fill.symbol());
+                ps.setLong(3, delta(fill));
+                ps.setBigDecimal(4, fill.price());
+            });
+            return;
+        }
+        jdbcTemplate.batchUpdate(PositionRepository.APPLY_FILL_ON_DUPLICATE_KEY, fills, fills.size(), (ps, fill) -> {
+            long delta = delta(fill);
+            ps.setLong(1, fill.portfolioId());
+            ps.setString(2, fill.symbol());
+            ps.setLong(3, delta);
+            ps.setBigDecimal(4, delta > 0 ? fill.price().multiply(BigDecimal.valueOf(delta)) : BigDecimal.ZERO);
+            ps.setBigDecimal(5, fill.price());
+        });
+    }
+
+    /** Folds {@code snapshots} into their bucket at every resolution, as one JDBC batch. */
+    public void applySnapshots(List<PortfolioValueRollups.Snapshot> snapshots) {
+        List<Object[]> rows = new ArrayList<>(snapshots.size() * RollupResolution.values().length);
+        for (PortfolioValueRollups.Snapshot snapshot : snapshots) {
+            for (RollupResolution resolution : RollupResolution.values()) {
+                Instant bucketStart = resolution.bucketStart(snapshot.timestamp());
+                BigDecimal value = snapshot.value();
+                rows.add(onDuplicateKey
+                    ? new Object[] {
+                        snapshot.portfolioId(), resolution.name(), Timestamp.from(bucketStart),
+                        value, value, value, value, Timestamp.from(snapshot.timestamp()), Timestamp.from(snapshot.timestamp())
+                    }
+                    : new Object[] {
+                        snapshot.portfolioId(), resolution.name(), utc(bucketStart), utc(snapshot.timestamp()), value
+                    });
+            }
+        }
+        jdbcTemplate.batchUpdate(onDuplicateKey
+            ? PortfolioValueRollupRepository.APPLY_SNAPSHOT_ON_DUPLICATE_KEY
+            : PortfolioValueRollupRepository.APPLY_SNAPSHOT, rows);
+    }
+
+    private static long delta(PositionLedger.Fill fill) {
+        return fill.type() == TradeType.BUY ? fill.quantity() : -fill.quantity();
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,438 @@
+package com.example.demo.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Append-only store of (time, value) points per portfolio, compressed the way
+ * Gorilla compresses time series: timestamps as delta-of-delta and values as
+ * deltas, each in a short variable-width bit code, so a steady series costs a
+ * few bits per point instead of a database row.
+ *
+ * Each portfolio has one file of fixed-size chunks, written through a
+ * memory-mapped buffer. A chunk header holds the first point in full, the
+ * chunk's time range and its point count; the count is written after the
+ * point's bits, so a point torn by a crash is simply not there. Range scans
+ * skip chunks whose time range misses the query.
+ *
+ * At most {@code maxOpen} files are held open, least recently used first out:
+ * an evicted file's tail is flushed and its channel closed, and the next
+ * append or read reopens it and resumes from the file.
+ *
+ * Values are kept as fixed point with {@value #SCALE} decimals, which is exact
+ * for money. With no directory configured the store is disabled: appends are
+ * dropped and queries return nothing.
+ */
+@Service
+public class ValueSeriesStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ValueSeriesStore.class);
+
+    static final int SCALE = 4;
+    static final int DEFAULT_MAX_OPEN = 1024;
+    // firstTime, firstValue, minTime, maxTime, count, bitLength
+    private static final int HEADER_BYTES = 8 + 8 + 8 + 8 + 4 + 4;
+    private static final int COUNT_OFFSET = 32;
+    private static final int BITS_OFFSET = 36;
+    /** Worst case for one point: two 4-bit prefixes and two raw 64-bit fields. */
+    private static final int MAX_POINT_BITS = 4 + 64 + 4 + 64;
+
+    public record Point(Instant timestamp, BigDecimal value) { }
+
+    private final Path dir;
+    private final int chunkBytes;
+    private final int maxOpen;
+    /** Open series, least recently used first. Guarded by itself; taken before any series' lock. */
+    private final LinkedHashMap<Long, Series> open = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Autowired
+    public ValueSeriesStore(@Value("${portfolio.series.dir:}") String dir,
+                            @Value("${portfolio.series.chunk-size-kb:16}") int chunkSizeKb,
+                            @Value("${portfolio.series.max-open:" + DEFAULT_MAX_OPEN + "}") int maxOpen) throws IOException {
+        this(dir.isBlank() ? null : Path.of(dir), chunkSizeKb << 10, maxOpen);
+    }
+
+    public ValueSeriesStore(Path dir, int chunkBytes) throws IOException {
+        this(dir, chunkBytes, DEFAULT_MAX_OPEN);
+    }
+
+    public ValueSeriesStore(Path dir, int chunkBytes, int maxOpen) throws IOException {
+        this.dir = dir;
+        this.chunkBytes = chunkBytes;
+        this.maxOpen = Math.max(1, maxOpen);
+        if (dir != null) Files.createDirectories(dir);
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    public void append(long portfolioId, Instant timestamp, BigDecimal value) {
+        if (dir == null) return;
+        long unscaled = value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        withSeries(portfolioId, s -> {
+            s.append(timestamp.toEpochMilli(), unscaled);
+            return null;
+        });
+    }
+
+    /** Points with {@code from <= timestamp < to}, oldest first. */
+    public List<Point> range(long portfolioId, Instant from, Instant to) {
+        List<Point> points = new ArrayList<>();
+        scan(portfolioId, from.toEpochMilli(), to.toEpochMilli(),
+            (time, value) -> points.add(new Point(Instant.ofEpochMilli(time), BigDecimal.valueOf(value, SCALE))));
+        points.sort(Comparator.comparing(Point::timestamp));
+        return points;
+    }
+
+    /**
+     * One point per {@code step}-wide bucket of [from, to) that has any data:
+     * the bucket start and the latest value recorded in it.
+     */
+    public List<Point> downsample(long portfolioId, Instant from, Instant to, Duration step) {
+        long start = from.toEpochMilli();
+        long stepMillis = step.toMillis();
+        // bucket index -> {time, value} of the latest point seen in it
+        TreeMap<Long, long[]> latest = new TreeMap<>();
+        scan(portfolioId, start, to.toEpochMilli(), (time, value) -> {
+            long[] point = latest.computeIfAbsent((time - start) / stepMillis, bucket -> new long[] { time, value });
+            if (time >= point[0]) {
+                point[0] = time;
+                point[1] = value;
+            }
+        });
+        List<Point> points = new ArrayList<>(latest.size());
+        latest.forEach((bucket, point) ->
+            points.add(new Point(Instant.ofEpochMilli(start + bucket * stepMillis), BigDecimal.valueOf(point[1], SCALE))));
+        return points;
+    }
+
+    /** Bytes of chunk space holding points for a portfolio, headers included. */
+    public long sizeBytes(long portfolioId) {
+        if (dir == null || !Files.exists(fileOf(portfolioId))) return 0;
+        return withSeries(portfolioId, s -> (long) s.sealedChunks * chunkBytes + HEADER_BYTES + (s.bitPos + 7) / 8);
+    }
+
+    /** Open series held right now, at most {@code maxOpen}. */
+    public int openSeries() {
+        synchronized (open) {
+            return open.size();
+        }
+    }
+
+    private interface PointVisitor {
+        void visit(long time, long value);
+    }
+
+    private void scan(long portfolioId, long from, long to, PointVisitor visitor) {
+        if (dir == null || !Files.exists(fileOf(portfolioId))) return;
+        withSeries(portfolioId, s -> {
+            try (FileChannel ch = FileChannel.open(fileOf(portfolioId), StandardOpenOption.READ)) {
+                MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                for (int chunk = 0; (long) (chunk + 1) * chunkBytes <= ch.size(); chunk++) {
+                    int base = chunk * chunkBytes;
+                    int count = in.getInt(base + COUNT_OFFSET);
+                    if (count == 0) break;
+                    long minTime = in.getLong(base + 16);
+                    long maxTime = in.getLong(base + 24);
+                    if (maxTime < from || minTime >= to) continue;
+                    decode(in.slice(base, chunkBytes), count, (time, value) -> {
+                        if (time >= from && time < to) visitor.visit(time, value);
+                    });
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read value series for portfolio " + portfolioId, e);
+            }
+            return null;
+        });
+    }
+
+    /** Decodes {@code count} points from one chunk; returns the decoder state after the last one. */
+    private static Cursor decode(ByteBuffer chunk, int count, PointVisitor visitor) {
+        Cursor c = new Cursor();
+        c.time = chunk.getLong(0);
+        c.value = chunk.getLong(8);
+        visitor.visit(c.time, c.value);
+        BitReader bits = new BitReader(chunk, HEADER_BYTES * 8L);
+        for (int i = 1; i < count; i++) {
+            long dod = readTimeCode(bits);
+            c.delta += dod;
+            c.time += c.delta;
+            c.value += readValueCode(bits);
+            visitor.visit(c.time, c.value);
+        }
+        c.bitPos = bits.pos;
+        return c;
+    }
+
+    /**
+     * Runs {@code action} holding the portfolio's open series' lock, opening it
+     * if needed. A series evicted between lookup and lock is looked up again.
+     */
+    private <T> T withSeries(long portfolioId, Function<Series, T> action) {
+        while (true) {
+            Series s = series(portfolioId);
+            synchronized (s) {
+                if (!s.closed) return action.apply(s);
+            }
+        }
+    }
+
+    private Series series(long portfolioId) {
+        synchronized (open) {
+            Series s = open.get(portfolioId);
+            if (s != null) return s;
+            if (open.size() >= maxOpen) {
+                // Closed before its file can be reopened, so a late writer holding it retries instead
+                Iterator<Series> eldest = open.values().iterator();
+                close(eldest.next());
+                eldest.remove();
+            }
+            try {
+                s = new Series(fileOf(portfolioId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open value series for portfolio " + portfolioId, e);
+            }
+            open.put(portfolioId, s);
+            return s;
+        }
+    }
+
+    private void close(Series s) {
+        synchronized (s) {
+            if (s.closed) return;
+            try {
+                s.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close value series in {}", dir, e);
+            }
+        }
+    }
+
+    private Path fileOf(long portfolioId) {
+        return dir.resolve(String.format("portfolio-%d.series", portfolioId));
+    }
+
+    // Timestamp delta-of-delta: 0 | 10+7 bits | 110+9 bits | 1110+12 bits | 1111+64 bits
+    private static void writeTimeCode(BitWriter out, long dod) {
+        if (dod == 0) {
+            out.write(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            out.write(0b10, 2);
+            out.write(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            out.write(0b110, 3);
+            out.write(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            out.write(0b1110, 4);
+            out.write(dod + 2047, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(dod, 64);
+        }
+    }
+
+    private static long readTimeCode(BitReader in) {
+        if (in.read(1) == 0) return 0;
+        if (in.read(1) == 0) return in.read(7) - 63;
+        if (in.read(1) == 0) return in.read(9) - 255;
+        if (in.read(1) == 0) return in.read(12) - 2047;
+        return in.read(64);
+    }
+
+    // Value delta, zig-zag encoded: 0 | 10+7 bits | 110+15 bits | 1110+31 bits | 1111+64 bits
+    private static void writeValueCode(BitWriter out, long delta) {
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        if (zigzag == 0) {
+            out.write(0, 1);
+        } else if (zigzag >>> 7 == 0) {
+            out.write(0b10, 2);
+            out.write(zigzag, 7);
+        } else if (zigzag >>> 15 == 0) {
+            out.write(0b110, 3);
+            out.write(zigzag, 15);
+        } else if (zigzag >>> 31 == 0) {
+            out.write(0b1110, 4);
+            out.write(zigzag, 31);
+        } else {
+            out.write(0b1111, 4);
+            out.write(zigzag, 64);
+        }
+    }
+
+    private static long readValueCode(BitReader in) {
+        long zigzag;
+        if (in.read(1) == 0) zigzag = 0;
+        else if (in.read(1) == 0) zigzag = in.read(7);
+        else if (in.read(1) == 0) zigzag = in.read(15);
+        else if (in.read(1) == 0) zigzag = in.read(31);
+        else zigzag = in.read(64);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static final class Cursor {
+        long time;
+        long delta;
+        long value;
+        long bitPos;
+    }
+
+    /** One portfolio's file; only its last chunk is mapped for writing. */
+    private final class Series {
+        private final FileChannel channel;
+        private MappedByteBuffer tail;
+        private int sealedChunks;
+        private int count;
+        private long bitPos;
+        private long minTime;
+        private long maxTime;
+        private final Cursor last = new Cursor();
+        private boolean closed;
+
+        Series(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int chunks = (int) (channel.size() / chunkBytes);
+            sealedChunks = Math.max(0, chunks - 1);
+            mapTail();
+            count = tail.getInt(COUNT_OFFSET);
+            if (count > 0) {
+                Cursor c = decode(tail, count, (time, value) -> { });
+                last.time = c.time;
+                last.delta = c.delta;
+                last.value = c.value;
+                bitPos = c.bitPos;
+                minTime = tail.getLong(16);
+                maxTime = tail.getLong(24);
+            }
+        }
+
+        void append(long time, long value) {
+            if (count > 0 && bitPos + MAX_POINT_BITS > (long) chunkBytes * 8) {
+                flush();
+                sealedChunks++;
+                count = 0;
+                mapTail();
+            }
+            if (count == 0) {
+                tail.putLong(0, time).putLong(8, value);
+                bitPos = HEADER_BYTES * 8L;
+                minTime = maxTime = time;
+                last.time = time;
+                last.delta = 0;
+                last.value = value;
+            } else {
+                BitWriter out = new BitWriter(tail, bitPos);
+                long delta = time - last.time;
+                writeTimeCode(out, delta - last.delta);
+                writeValueCode(out, value - last.value);
+                bitPos = out.pos;
+                last.time = time;
+                last.delta = delta;
+                last.value = value;
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time);
+            }
+            count++;
+            tail.putLong(16, minTime).putLong(24, maxTime).putInt(BITS_OFFSET, (int) bitPos);
+            tail.putInt(COUNT_OFFSET, count);
+        }
+
+        void flush() {
+            tail.force();
+        }
+
+        private void mapTail() {
+            try {
+                tail = channel.map(FileChannel.MapMode.READ_WRITE, (long) sealedChunks * chunkBytes, chunkBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map value series chunk", e);
+            }
+        }
+
+        void close() throws IOException {
+            closed = true;
+            flush();
+            channel.close();
+        }
+    }
+
+    private static final class BitWriter {
+        private final ByteBuffer buf;
+        long pos;
+
+        BitWriter(ByteBuffer buf, long pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        /** Writes the low {@code n} bits of {@code value}, most significant first. */
+        void write(long value, int n) {
+            while (n > 0) {
+                int index = (int) (pos >>> 3);
+                int free = 8 - (int) (pos & 7);
+                int take = Math.min(free, n);
+                int bits = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+                // Keep only the bits already written; anything after them is a torn write
+                int current = free == 8 ? 0 : buf.get(index) & (0xFF << free) & 0xFF;
+                buf.put(index, (byte) (current | (bits << (free - take))));
+                n -= take;
+                pos += take;
+            }
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer buf;
+        long pos;
+
+        BitReader(ByteBuffer buf, long pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        long read(int n) {
+            long value = 0;
+            while (n > 0) {
+                int index = (int) (pos >>> 3);
+                int available = 8 - (int) (pos & 7);
+                int take = Math.min(available, n);
+                int bits = (buf.get(index) >>> (available - take)) & ((1 << take) - 1);
+                value = (value << take) | bits;
+                n -= take;
+                pos += take;
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (open) {
+            open.values().forEach(this::close);
+            open.clear();
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package com.example.demo.websocket;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final int sendBufferLimitBytes;
+    private final int sendTimeLimitMillis;
+
+    public WebSocketConfig(@Value("${websocket.send-buffer-limit-bytes:524288}") int sendBufferLimitBytes,
+                           @Value("${websocket.send-time-limit-ms:10000}") int sendTimeLimitMillis) {
+        this.sendBufferLimitBytes = sendBufferLimitBytes;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.enableSimpleBroker("/topic");
@@ -19,4 +30,15 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").withSockJS();
     }
+
+    /**
+     * A session whose unsent frames pass the buffer limit, or whose socket
+     * blocks a send for longer than the time limit, is closed instead of
+     * buffering without bound.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferLimitBytes);
+        registration.setSendTimeLimit(sendTimeLimitMillis);
+    }
 }
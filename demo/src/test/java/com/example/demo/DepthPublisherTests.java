@@ -0,0 +1,73 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.example.demo.dto.OrderBookDepth;
+import com.example.demo.service.DepthPublisher;
+import com.example.demo.service.MetricsService;
+import com.example.demo.service.OrderMatchingService;
+import com.example.demo.service.OrderMatchingService.Order;
+import com.example.demo.service.TradeWriter;
+
+@ExtendWith(MockitoExtension.class)
+public class DepthPublisherTests {
+    @Mock MetricsService metricsService;
+    @Mock TradeWriter tradeWriter;
+    @Mock SimpMessagingTemplate messagingTemplate;
+
+    private OrderMatchingService matcher;
+    private DepthPublisher publisher;
+
+    @BeforeEach
+    void setup() {
+        matcher = new OrderMatchingService(metricsService, tradeWriter);
+        publisher = new DepthPublisher(matcher, messagingTemplate, 5);
+    }
+
+    @Test
+    void testBurstIsConflatedToOneFramePerTick() {
+        for (int i = 0; i < 100; i++) {
+            matcher.placeOrder(new Order(1L, "AAPL", Order.Side.SELL, 1, BigDecimal.valueOf(150 + i % 3)));
+        }
+        matcher.placeOrder(new Order(2L, "AAPL", Order.Side.BUY, 10, BigDecimal.valueOf(150)));
+
+        publisher.publishChanged();
+
+        ArgumentCaptor<OrderBookDepth> frame = ArgumentCaptor.forClass(OrderBookDepth.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/depth/AAPL"), frame.capture());
+        // The one frame reflects the state after the whole burst
+        assertThat(frame.getValue().getAsks()).extracting(OrderBookDepth.Level::getQuantity)
+            .containsExactly(24L, 33L, 33L);
+    }
+
+    @Test
+    void testUnchangedBooksAreNotResent() {
+        matcher.placeOrder(new Order(1L, "AAPL", Order.Side.BUY, 5, BigDecimal.valueOf(100)));
+        matcher.placeOrder(new Order(1L, "MSFT", Order.Side.BUY, 5, BigDecimal.valueOf(300)));
+        publisher.publishChanged();
+        verify(messagingTemplate, times(2)).convertAndSend(anyString(), any(OrderBookDepth.class));
+
+        publisher.publishChanged();
+        verify(messagingTemplate, times(2)).convertAndSend(anyString(), any(OrderBookDepth.class));
+
+        matcher.placeOrder(new Order(1L, "MSFT", Order.Side.BUY, 5, BigDecimal.valueOf(301)));
+        publisher.publishChanged();
+        verify(messagingTemplate, times(2)).convertAndSend(eq("/topic/depth/MSFT"), any(OrderBookDepth.class));
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/depth/AAPL"), any(OrderBookDepth.class));
+    }
+}
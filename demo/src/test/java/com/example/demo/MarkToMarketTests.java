@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.example.demo.dto.PortfolioValueUpdate;
+import com.example.demo.entity.Position;
+import com.example.demo.entity.TradeType;
+import com.example.demo.service.MarkToMarket;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.PositionLedger.Fill;
+
+@ExtendWith(MockitoExtension.class)
+public class MarkToMarketTests {
+    @Mock SimpMessagingTemplate messagingTemplate;
+
+    private final MarketPrices prices = new MarketPrices();
+
+    private static void buy(PositionLedger ledger, long portfolioId, String symbol, int quantity) {
+        ledger.record(List.of(new Fill(portfolioId, symbol, TradeType.BUY, quantity, new BigDecimal("1.00"))), () -> null);
+    }
+
+    @Test
+    void testTickRevaluesOnlyTheHoldersOfThatSymbol() {
+        PositionLedger ledger = new PositionLedger(portfolioId -> List.of());
+        MarkToMarket mtm = new MarkToMarket(ledger, prices, messagingTemplate);
+        prices.update("AAPL", new BigDecimal("200.00"));
+        prices.update("MSFT", new BigDecimal("400.00"));
+
+        int portfolios = 20_000;
+        for (long id = 1; id <= portfolios; id++) {
+            buy(ledger, id, id % 2 == 0 ? "AAPL" : "MSFT", 10);
+        }
+        buy(ledger, 1L, "AAPL", 5);
+        ledger.record(List.of(new Fill(3L, "MSFT", TradeType.SELL, 10, new BigDecimal("1.00"))), () -> null);
+
+        assertThat(mtm.holderCount("AAPL")).isEqualTo(portfolios / 2 + 1);
+        assertThat(mtm.holderCount("MSFT")).isEqualTo(portfolios / 2 - 1);
+        assertThat(mtm.value(1L)).isEqualByComparingTo("5000.00");
+
+        assertThat(mtm.onTick("AAPL", new BigDecimal("201.00"))).isEqualTo(portfolios / 2 + 1);
+        assertThat(mtm.onTick("AAPL", new BigDecimal("201.50"))).isEqualTo(portfolios / 2 + 1);
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(PortfolioValueUpdate.class));
+
+        // Two ticks, one update per holder carrying the latest value
+        mtm.publishChanged();
+        verify(messagingTemplate, times(portfolios / 2 + 1)).convertAndSend(anyString(), any(PortfolioValueUpdate.class));
+        ArgumentCaptor<PortfolioValueUpdate> update = ArgumentCaptor.forClass(PortfolioValueUpdate.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/portfolio/1"), update.capture());
+        // 10 MSFT at 400 plus 5 AAPL at 201.50
+        assertThat(update.getValue().getValue()).isEqualByComparingTo("5007.50");
+        assertThat(mtm.value(2L)).isEqualByComparingTo("2015.00");
+        assertThat(mtm.value(3L)).isEqualByComparingTo("0");
+        assertThat(mtm.value(1L)).isEqualByComparingTo(ledger.value(1L, prices::price));
+
+        clearInvocations(messagingTemplate);
+        assertThat(mtm.onTick("AAPL", new BigDecimal("201.50"))).isZero();
+        mtm.publishChanged();
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(PortfolioValueUpdate.class));
+    }
+
+    @Test
+    void testPortfoliosLoadedOrDroppedByTheLedgerAreIndexed() {
+        List<Position> rows = new ArrayList<>();
+        rows.add(new Position(7L, "TSLA", 4, new BigDecimal("1000.00"), new BigDecimal("250.00")));
+        rows.add(new Position(7L, "GOOG", -2, BigDecimal.ZERO, new BigDecimal("190.00")));
+        PositionLedger ledger = new PositionLedger(portfolioId -> rows);
+        MarkToMarket mtm = new MarkToMarket(ledger, prices, messagingTemplate);
+
+        ledger.holdings(7L);
+        // Valued at the reference price until TSLA ticks; the short counts as zero
+        assertThat(mtm.value(7L)).isEqualByComparingTo("994.00");
+        mtm.onTick("TSLA", new BigDecimal("260.00"));
+        assertThat(mtm.value(7L)).isEqualByComparingTo("1040.00");
+
+        ledger.evict(7L);
+        assertThat(mtm.holderCount("TSLA")).isZero();
+        assertThat(mtm.value(7L)).isEqualByComparingTo("0");
+        ledger.holdings(7L);
+        assertThat(mtm.value(7L)).isEqualByComparingTo("1040.00");
+    }
+}
@@ -1,45 +1,131 @@
 package com.example.demo;
 
+import com.example.demo.entity.Stock;
+import com.example.demo.repository.StockRepository;
+import com.example.demo.service.MarketDataProvider;
+import com.example.demo.service.MarkToMarket;
 import com.example.demo.service.MarketDataService;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.PnlEngine;
+import com.example.demo.service.PriceBroadcaster;
+import com.example.demo.service.QuoteCache;
+import com.example.demo.service.QuoteDemand;
+import com.example.demo.service.TokenBucket;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.test.context.ActiveProfiles;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
-@SpringBootTest
-@ActiveProfiles("test")
+@ExtendWith(MockitoExtension.class)
 public class MarketDataServiceTests {
-    @MockBean RestTemplate restTemplate;
-    @MockBean SimpMessagingTemplate ws;
-    @Autowired
-    private org.springframework.context.ApplicationContext context;
+    @Mock PriceBroadcaster broadcaster;
+    @Mock MarkToMarket markToMarket;
+    @Mock PnlEngine pnlEngine;
+    @Mock MarketDataProvider provider;
+    @Mock StockRepository stockRepository;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final QuoteDemand demand = new QuoteDemand(now::get, 300_000);
+
+    private QuoteCache cache(Map<String, BigDecimal> api) {
+        return new QuoteCache(api::get, new MarketPrices(), Runnable::run, now::get, 60_000, 600_000, 100);
+    }
+
+    private static List<Stock> stocks(String... symbols) {
+        return Arrays.stream(symbols).map(symbol -> new Stock(symbol, symbol)).toList();
+    }
 
     @Test
     void testFetchAndBroadcastSendsQuotes() {
-        com.example.demo.service.StockQuote quote1 = new com.example.demo.service.StockQuote();
-        quote1.setSymbol("AAPL");
-        quote1.setPrice(150.0);
-        com.example.demo.service.StockQuote quote2 = new com.example.demo.service.StockQuote();
-        quote2.setSymbol("GOOG");
-        quote2.setPrice(2800.0);
-        List<com.example.demo.service.StockQuote> quotes = Arrays.asList(quote1, quote2);
-        when(restTemplate.exchange(anyString(), any(), any(), any(ParameterizedTypeReference.class)))
-            .thenReturn(new org.springframework.http.ResponseEntity<>(quotes, org.springframework.http.HttpStatus.OK));
-        MarketDataService service = new MarketDataService(ws, restTemplate, "dummy", "dummy");
+        Map<String, BigDecimal> api = Map.of("AAPL", new BigDecimal("150.00"), "GOOG", new BigDecimal("2800.00"));
+        when(stockRepository.findAll()).thenReturn(stocks("AAPL", "GOOG", "MSFT"));
+        when(provider.availableCalls()).thenReturn(5);
+        MarketDataService service = new MarketDataService(broadcaster, cache(api), demand, provider, stockRepository,
+            markToMarket, pnlEngine, 60_000);
+        service.fetchAndBroadcast();
+        verify(broadcaster).offer(eq("AAPL"), any(BigDecimal.class));
+        verify(broadcaster).offer(eq("GOOG"), any(BigDecimal.class));
+        verify(broadcaster, times(2)).offer(anyString(), any(BigDecimal.class));
+        verify(markToMarket).onTick("AAPL", new BigDecimal("150.00"));
+        verify(markToMarket).onTick("GOOG", new BigDecimal("2800.00"));
+        verify(pnlEngine).onTick("AAPL");
+    }
+
+    @Test
+    void testQuotaGoesToTheMostWatchedSymbolsFirst() {
+        Map<String, BigDecimal> api = Map.of("AAPL", BigDecimal.ONE, "GOOG", BigDecimal.valueOf(2),
+            "MSFT", BigDecimal.TEN, "TSLA", BigDecimal.ONE);
+        when(stockRepository.findAll()).thenReturn(stocks("AAPL", "GOOG", "MSFT"));
+        when(provider.availableCalls()).thenReturn(1, 1, 0);
+        demand.recordRead("MSFT");
+        demand.recordRead("MSFT");
+        demand.recordRead("GOOG");
+        // a subscriber outweighs a couple of REST reads, and brings in a symbol the database does not list
+        subscribe("s1", "TSLA");
+
+        QuoteCache quoteCache = cache(api);
+        MarketDataService service = new MarketDataService(broadcaster, quoteCache, demand, provider, stockRepository,
+            markToMarket, pnlEngine, 60_000);
         service.fetchAndBroadcast();
-        verify(ws, times(2)).convertAndSend(anyString(), any(com.example.demo.service.StockQuote.class));
+
+        InOrder order = inOrder(broadcaster);
+        order.verify(broadcaster).offer(eq("TSLA"), any(BigDecimal.class));
+        order.verify(broadcaster).offer(eq("MSFT"), any(BigDecimal.class));
+        verify(broadcaster, times(2)).offer(anyString(), any(BigDecimal.class));
+        assertThat(quoteCache.ageMillis("GOOG")).isEqualTo(Long.MAX_VALUE);
+
+        // next round skips what was just refreshed and picks up where the quota ran out
+        reset(broadcaster);
+        when(provider.availableCalls()).thenReturn(5);
+        service.fetchAndBroadcast();
+        order = inOrder(broadcaster);
+        order.verify(broadcaster).offer(eq("GOOG"), any(BigDecimal.class));
+        order.verify(broadcaster).offer(eq("AAPL"), any(BigDecimal.class));
+        verify(broadcaster, times(2)).offer(anyString(), any(BigDecimal.class));
+    }
+
+    @Test
+    void testStreamedTicksTakeTheBroadcastAndValuationPath() {
+        QuoteCache quoteCache = cache(Map.of());
+        MarketDataService service = new MarketDataService(broadcaster, quoteCache, demand, provider, stockRepository,
+            markToMarket, pnlEngine, 60_000);
+        service.publish("SIM00001", new BigDecimal("101.2345"));
+        verify(broadcaster).offer(eq("SIM00001"), any(BigDecimal.class));
+        verify(markToMarket).onTick("SIM00001", new BigDecimal("101.2345"));
+        verify(pnlEngine).onTick("SIM00001");
+        assertThat(quoteCache.price("SIM00001")).isEqualByComparingTo("101.2345");
+    }
+
+    @Test
+    void testTokenBucketRefillsAtTheQuotaRate() {
+        AtomicLong nanos = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(5, Duration.ofMinutes(1), nanos::get);
+        for (int i = 0; i < 5; i++) assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertThat(bucket.available()).isEqualTo(0);
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+
+        nanos.addAndGet(Duration.ofHours(1).toNanos());
+        assertThat(bucket.available()).isEqualTo(5);
+    }
+
+    private void subscribe(String session, String symbol) {
+        QuoteDemandTests.subscribe(demand, session, "sub-" + symbol, "/topic/prices/" + symbol);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
+import software.amazon.awssdk.services.cloudwatch.model.PutMetricDataRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.example.demo.service.CloudWatchMetricsSink;
+import com.example.demo.service.MetricsService;
+import com.example.demo.service.MetricsSink;
+
+@ExtendWith(MockitoExtension.class)
+public class MetricsServiceTests {
+    @Mock CloudWatchClient cloudWatch;
+
+    private final List<MetricsSink.Datum> published = new ArrayList<>();
+    private final MetricsService metrics = new MetricsService(published::addAll, 60_000);
+
+    @Test
+    void testConcurrentCountsAreSummedPerFlushAndReset() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) metrics.publishOrderRate(1);
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        metrics.flush();
+        metrics.flush();
+
+        assertThat(published).extracting(MetricsSink.Datum::name).containsExactly("OrdersPerMinute", "OrdersPerMinute");
+        assertThat(published).extracting(MetricsSink.Datum::value).containsExactly(80_000.0, 0.0);
+    }
+
+    @Test
+    void testGaugesAreSampledAtFlush() {
+        AtomicLong backlog = new AtomicLong(3);
+        metrics.gauge("Backlog", "Count", backlog::get);
+        metrics.flush();
+        backlog.set(7);
+        metrics.flush();
+
+        assertThat(published).extracting(MetricsSink.Datum::value).containsExactly(3.0, 7.0);
+    }
+
+    @Test
+    void testSinkFailureDoesNotReachCallers() {
+        MetricsService failing = new MetricsService(datums -> { throw new IllegalStateException("no region"); }, 60_000);
+        failing.publishOrderRate(1);
+        failing.flush();
+    }
+
+    @Test
+    void testCloudWatchSinkSplitsIntoRequestsOfAtMostOneThousand() {
+        CloudWatchMetricsSink sink = new CloudWatchMetricsSink(() -> cloudWatch);
+        List<MetricsSink.Datum> datums = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) datums.add(new MetricsSink.Datum("M" + i, "Count", i, Instant.now()));
+
+        sink.publish(datums);
+
+        ArgumentCaptor<PutMetricDataRequest> requests = ArgumentCaptor.forClass(PutMetricDataRequest.class);
+        verify(cloudWatch, times(3)).putMetricData(requests.capture());
+        assertThat(requests.getAllValues()).extracting(r -> r.metricData().size()).containsExactly(1000, 1000, 500);
+        assertThat(requests.getValue().namespace()).isEqualTo("StockSimulator");
+    }
+}
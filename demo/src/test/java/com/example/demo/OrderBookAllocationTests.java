@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.example.demo.service.OrderBook;
+import com.example.demo.service.OrderIndex;
+import com.example.demo.service.OrderPool;
+
+/**
+ * Measures bytes allocated by the matching thread while a warm book rests,
+ * sweeps and refills orders. The core is meant to run entirely out of its
+ * node and level pools, so the steady state should allocate nothing.
+ */
+public class OrderBookAllocationTests {
+
+    private static final int ROUNDS = 200_000;
+
+    private long fills;
+    private final OrderBook.FillHandler handler =
+        (symbolId, takerId, makerId, takerBuy, taker, maker, price, qty) -> fills += qty;
+    private long nextOrderId;
+
+    @Test
+    void testSteadyStateMatchingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        OrderBook book = new OrderBook(0, new OrderPool(256), new OrderIndex(256));
+        run(book, ROUNDS); // warm up pools, level arrays and the JIT
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        run(book, ROUNDS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow for a few hundred bytes of measurement noise from the MXBean itself
+        assertThat(allocated).isLessThan(1024);
+        assertThat(fills).isPositive();
+    }
+
+    /**
+     * Each round rests five asks across levels, sweeps them with buys of mixed
+     * size, then does the same on the bid side. Order ids keep increasing, so
+     * the order index is exercised with fresh keys every round.
+     */
+    private void run(OrderBook book, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            long base = 10_000 + (i & 7);
+            for (int j = 0; j < 5; j++) {
+                book.match(++nextOrderId, 1, false, base + j, 10, handler);
+            }
+            book.match(++nextOrderId, 2, true, base + 1, 15, handler);
+            book.match(++nextOrderId, 2, true, base + 4, 35, handler);
+            for (int j = 0; j < 5; j++) {
+                book.match(++nextOrderId, 3, true, base - 1 - j, 10, handler);
+            }
+            book.match(++nextOrderId, 4, false, base - 5, 50, handler);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.demo.service.OrderBook;
+import com.example.demo.service.OrderIndex;
+import com.example.demo.service.OrderPool;
+import com.example.demo.service.Ticks;
+
+public class OrderBookTests {
+
+    private static final boolean BUY = true;
+    private static final boolean SELL = false;
+
+    private final OrderIndex index = new OrderIndex(16);
+    private final OrderBook book = new OrderBook(0, new OrderPool(16), index);
+    private final List<String> fills = new ArrayList<>();
+
+    /** Uses the portfolio id as the order id too, which keeps assertions short. */
+    private void place(long portfolioId, boolean buy, int qty, String price) {
+        book.match(portfolioId, portfolioId, buy, Ticks.toTicks(new BigDecimal(price), buy), qty,
+            (symbolId, takerId, makerId, takerBuy, taker, maker, fillPrice, fillQty) ->
+                fills.add(maker + ":" + fillQty + "@" + Ticks.toPrice(fillPrice)));
+    }
+
+    @Test
+    void testEqualPricedOrdersFillInArrivalOrder() {
+        place(1, SELL, 10, "150.00");
+        place(2, SELL, 10, "150.00");
+        place(3, SELL, 10, "150.00");
+
+        place(9, BUY, 25, "150.00");
+
+        assertThat(fills).containsExactly("1:10@150.00", "2:10@150.00", "3:5@150.00");
+        assertThat(book.restingQuantity(SELL)).isEqualTo(5);
+        assertThat(book.getAsks().best().getOrderCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testBetterPricesFillFirstAndSweepAcrossLevels() {
+        place(1, SELL, 10, "151.00");
+        place(2, SELL, 10, "149.50");
+        place(3, SELL, 10, "150.25");
+
+        place(9, BUY, 30, "151.00");
+
+        assertThat(fills).containsExactly("2:10@149.50", "3:10@150.25", "1:10@151.00");
+        assertThat(book.getAsks().levelCount()).isZero();
+        assertThat(book.bestAsk()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void testBestBidAndAskTrackTheTouch() {
+        place(1, BUY, 5, "99.00");
+        place(2, BUY, 5, "100.00");
+        place(3, BUY, 5, "98.00");
+        place(4, SELL, 5, "101.00");
+        place(5, SELL, 5, "102.00");
+
+        assertThat(book.bestBid()).isEqualTo(10000);
+        assertThat(book.bestAsk()).isEqualTo(10100);
+        assertThat(book.getBids().levelCount()).isEqualTo(3);
+        assertThat(book.getBids().levelAt(1).getPrice()).isEqualTo(9900);
+
+        place(6, SELL, 5, "100.00");
+
+        assertThat(fills).containsExactly("2:5@100.00");
+        assertThat(book.bestBid()).isEqualTo(9900);
+    }
+
+    @Test
+    void testNonCrossingOrderRestsWithoutTrading() {
+        place(1, SELL, 10, "150.00");
+        place(2, BUY, 10, "149.99");
+
+        assertThat(fills).isEmpty();
+        assertThat(book.bestBid()).isEqualTo(14999);
+        assertThat(book.bestAsk()).isEqualTo(15000);
+    }
+
+    @Test
+    void testCancelFromMiddleOfQueueKeepsOthersInOrder() {
+        place(1, SELL, 10, "150.00");
+        place(2, SELL, 10, "150.00");
+        place(3, SELL, 10, "150.00");
+
+        book.cancel(index.get(2));
+        place(9, BUY, 20, "150.00");
+
+        assertThat(fills).containsExactly("1:10@150.00", "3:10@150.00");
+        assertThat(index.get(2)).isNull();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void testCancellingLastOrderRemovesItsLevel() {
+        place(1, BUY, 10, "99.00");
+        place(2, BUY, 10, "100.00");
+        place(3, BUY, 10, "98.00");
+
+        book.cancel(index.get(1));
+
+        assertThat(book.getBids().levelCount()).isEqualTo(2);
+        assertThat(book.bestBid()).isEqualTo(10000);
+        assertThat(book.getBids().levelAt(1).getPrice()).isEqualTo(9800);
+        assertThat(book.restingQuantity(BUY)).isEqualTo(20);
+    }
+
+    @Test
+    void testReduceKeepsTimePriority() {
+        place(1, SELL, 10, "150.00");
+        place(2, SELL, 10, "150.00");
+
+        book.reduce(index.get(1), 4);
+        place(9, BUY, 6, "150.00");
+
+        assertThat(fills).containsExactly("1:4@150.00", "2:2@150.00");
+        assertThat(book.restingQuantity(SELL)).isEqualTo(8);
+    }
+}
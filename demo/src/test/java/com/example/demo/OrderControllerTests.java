@@ -0,0 +1,78 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.demo.controller.OrderController;
+import com.example.demo.repository.PortfolioRepository;
+import com.example.demo.repository.PortfolioValueHistoryRepository;
+import com.example.demo.repository.StockRepository;
+import com.example.demo.repository.TransactionRepository;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.OrderPipeline;
+import com.example.demo.service.PortfolioValueRollups;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.Upserts;
+import com.example.demo.service.ValueSeriesStore;
+
+@WebMvcTest(OrderController.class)
+public class OrderControllerTests {
+    @Autowired MockMvc mvc;
+    @MockitoBean TransactionRepository transactionRepository;
+    @MockitoBean Upserts upserts;
+    @MockitoBean PortfolioRepository portfolioRepository;
+    @MockitoBean StockRepository stockRepository;
+    @MockitoBean PortfolioValueHistoryRepository valueHistoryRepository;
+    @MockitoBean OrderPipeline orderPipeline;
+    @MockitoBean OrderLatency orderLatency;
+    @MockitoBean PositionLedger positionLedger;
+    @MockitoBean MarketPrices marketPrices;
+    @MockitoBean PortfolioValueRollups valueRollups;
+    @MockitoBean ValueSeriesStore valueSeries;
+    @MockitoBean PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setup() {
+        when(portfolioRepository.existsById(1L)).thenReturn(true);
+    }
+
+    private static String order(String symbol) {
+        return "{\"portfolioId\":1,\"symbol\":\"" + symbol + "\",\"quantity\":10,\"price\":150.25,\"side\":\"BUY\"}";
+    }
+
+    @Test
+    void testUnlistedSymbolIsRejectedBeforeTheMatchingEngine() throws Exception {
+        mvc.perform(post("/api/orders/limit").contentType(MediaType.APPLICATION_JSON).content(order("ZZJUNK1")))
+            .andExpect(status().isBadRequest());
+        verify(orderPipeline, never()).submit(anyLong(), anyString(), anyBoolean(), anyLong(), anyInt());
+    }
+
+    @Test
+    void testListedSymbolIsSubmitted() throws Exception {
+        when(stockRepository.existsById("AAPL")).thenReturn(true);
+        when(orderPipeline.submit(eq(1L), eq("AAPL"), eq(true), anyLong(), eq(10))).thenReturn(42L);
+
+        mvc.perform(post("/api/orders/limit").contentType(MediaType.APPLICATION_JSON).content(order("AAPL")))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.orderId").value(42));
+    }
+}
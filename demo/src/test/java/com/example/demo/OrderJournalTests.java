@@ -0,0 +1,220 @@
+package com.example.demo;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.demo.service.MetricsService;
+import com.example.demo.service.OrderJournal;
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.OrderMatchingService;
+import com.example.demo.service.OrderMatchingService.Order.Side;
+import com.example.demo.service.OrderPipeline;
+import com.example.demo.service.SnapshotStore;
+import com.example.demo.service.TradeWriter;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderJournalTests {
+    @Mock MetricsService metricsService;
+    @Mock TradeWriter tradeWriter;
+    @Mock SimpMessagingTemplate messagingTemplate;
+
+    @TempDir Path dir;
+
+    private final OrderLatency latency = new OrderLatency(new SimpleMeterRegistry());
+
+    private OrderPipeline pipeline(OrderMatchingService matcher, OrderJournal journal) {
+        return new OrderPipeline(matcher, messagingTemplate, metricsService, latency, journal, SnapshotStore.disabled(), 0);
+    }
+
+    @Test
+    void testRestartRebuildsBooksFromJournal() throws Exception {
+        OrderMatchingService before = new OrderMatchingService(metricsService, tradeWriter);
+        OrderJournal journal = new OrderJournal(dir, 1 << 20, true);
+        OrderPipeline first = pipeline(before, journal);
+        first.start();
+        long resting = first.submit(1L, "AAPL", false, 15_000, 10);
+        long cancelled = first.submit(1L, "AAPL", false, 15_100, 5);
+        first.submit(2L, "AAPL", true, 15_000, 3);          // partially fills the first ask
+        first.submit(3L, "MSFT", true, 30_000, 8);
+        first.amend(resting, 1L, 4);
+        first.cancel(cancelled, 1L);
+        assertThat(first.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+        first.stop();
+        journal.close();
+
+        OrderMatchingService after = new OrderMatchingService(metricsService, tradeWriter);
+        OrderJournal reopened = new OrderJournal(dir, 1 << 20, true);
+        OrderPipeline second = pipeline(after, reopened);
+        second.start();
+        try {
+            assertThat(after.restingQuantity("AAPL", Side.SELL)).isEqualTo(before.restingQuantity("AAPL", Side.SELL))
+                .isEqualTo(4);
+            assertThat(after.restingQuantity("AAPL", Side.BUY)).isZero();
+            assertThat(after.restingQuantity("MSFT", Side.BUY)).isEqualTo(8);
+
+            // Orders from before the restart can still be managed, and new ids don't collide
+            long next = second.submit(1L, "AAPL", false, 15_000, 1);
+            assertThat(next).isGreaterThan(resting);
+            second.cancel(resting, 1L);
+            assertThat(second.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(after.restingQuantity("AAPL", Side.SELL)).isEqualTo(1);
+        } finally {
+            second.stop();
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testRestartLoadsSnapshotAndReplaysOnlyTheTail() throws Exception {
+        Path journalDir = dir.resolve("journal");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SnapshotStore snapshots = new SnapshotStore(dir.resolve("snapshots"), registry);
+
+        OrderMatchingService before = new OrderMatchingService(metricsService, tradeWriter);
+        // Small segments, so the snapshot lets the journal drop the ones it covers
+        OrderJournal journal = new OrderJournal(journalDir, 4096, false);
+        OrderPipeline first = new OrderPipeline(before, messagingTemplate, metricsService, latency, journal, snapshots, 0);
+        first.start();
+        long oldest = first.submit(1L, "AAPL", false, 15_000, 10);
+        for (int i = 0; i < 300; i++) {
+            first.submit(2L, i % 2 == 0 ? "MSFT" : "GOOG", true, 10_000 + i, 1);
+        }
+        first.requestSnapshot();
+        first.submit(3L, "AAPL", true, 15_000, 4);           // after the snapshot: partially fills the ask
+        first.submit(3L, "TSLA", true, 20_000, 7);           // a symbol first seen after the snapshot
+        first.amend(oldest, 1L, 5);
+        assertThat(first.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+        first.stop();
+        journal.close();
+
+        assertThat(journalDir.resolve("orders-00000.journal")).doesNotExist();
+        assertThat(registry.get("orders.snapshot.size").gauge().value()).isPositive();
+
+        OrderMatchingService after = new OrderMatchingService(metricsService, tradeWriter);
+        OrderJournal reopened = new OrderJournal(journalDir, 4096, false);
+        SnapshotStore reloaded = new SnapshotStore(dir.resolve("snapshots"), registry);
+        OrderPipeline second = new OrderPipeline(after, messagingTemplate, metricsService, latency, reopened, reloaded, 0);
+        second.start();
+        second.stop();
+        reopened.close();
+
+        assertThat(after.restingQuantity("AAPL", Side.SELL)).isEqualTo(5);
+        assertThat(after.restingQuantity("MSFT", Side.BUY)).isEqualTo(150);
+        assertThat(after.restingQuantity("GOOG", Side.BUY)).isEqualTo(150);
+        assertThat(after.restingQuantity("TSLA", Side.BUY)).isEqualTo(7);
+        for (String symbol : new String[] { "AAPL", "MSFT", "GOOG", "TSLA" }) {
+            for (Side side : Side.values()) {
+                assertThat(after.restingQuantity(symbol, side)).isEqualTo(before.restingQuantity(symbol, side));
+            }
+        }
+        assertThat(after.nextOrderId(0)).isGreaterThan(oldest);
+        assertThat(registry.get("orders.snapshot.load.time").timeGauge()).isNotNull();
+    }
+
+    @Test
+    void testRestartAfterCompactionAppendsAfterTheSnapshot() throws Exception {
+        long snapshotAt;
+        try (OrderJournal journal = new OrderJournal(dir, 4096, false)) {
+            for (int i = 1; i <= 500; i++) journal.appendCancel((long) i << 8, 1L);
+            snapshotAt = journal.position();
+            journal.appendCancel(501L << 8, 1L);
+            journal.commit();
+            assertThat(snapshotAt >>> 32).isEqualTo(2);
+            journal.deleteSegmentsBefore(snapshotAt);
+        }
+        try (OrderJournal journal = new OrderJournal(dir, 4096, false)) {
+            assertThat(journal.position()).isGreaterThan(snapshotAt);
+            for (int i = 502; i <= 800; i++) journal.appendCancel((long) i << 8, 1L);
+            journal.commit();
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        try (OrderJournal journal = new OrderJournal(dir, 4096, false)) {
+            journal.replay(snapshotAt, new OrderJournal.Visitor() {
+                @Override
+                public void onNewOrder(long orderId, int symbolId, String symbol, long portfolioId,
+                                       boolean buy, long price, int quantity) { }
+                @Override public void onCancel(long orderId, long portfolioId) { replayed.add(orderId >>> 8); }
+                @Override public void onAmend(long orderId, long portfolioId, int quantity) { }
+            });
+        }
+        assertThat(replayed).hasSize(300);
+        assertThat(replayed.get(0)).isEqualTo(501L);
+        assertThat(replayed.get(299)).isEqualTo(800L);
+    }
+
+    @Test
+    void testLongSymbolsRoundTripAndOverlongOnesAreRejected() throws Exception {
+        String longSymbol = "X".repeat(200);
+        try (OrderJournal journal = new OrderJournal(dir, 1 << 20, false)) {
+            journal.appendNewOrder(1L << 8, 0, longSymbol, 1L, true, 10_000, 5);
+            // distinct non-ASCII symbols must not collapse into one on replay
+            journal.appendNewOrder(2L << 8, 1, "ÄBC", 1L, true, 10_000, 5);
+            journal.appendNewOrder(3L << 8, 2, "ÖBC", 1L, true, 10_000, 5);
+            assertThatThrownBy(() -> journal.appendNewOrder(4L << 8, 3, "Y".repeat(OrderJournal.MAX_SYMBOL_BYTES + 1),
+                1L, true, 10_000, 5)).isInstanceOf(IllegalArgumentException.class);
+            // 128 characters, but 256 bytes of UTF-8
+            assertThatThrownBy(() -> journal.appendNewOrder(5L << 8, 3, "Ä".repeat(128),
+                1L, true, 10_000, 5)).isInstanceOf(IllegalArgumentException.class);
+            journal.commit();
+        }
+        List<String> replayed = new ArrayList<>();
+        try (OrderJournal journal = new OrderJournal(dir, 1 << 20, false)) {
+            journal.replay(new OrderJournal.Visitor() {
+                @Override
+                public void onNewOrder(long orderId, int symbolId, String symbol, long portfolioId,
+                                       boolean buy, long price, int quantity) {
+                    replayed.add(symbol);
+                }
+                @Override public void onCancel(long orderId, long portfolioId) { }
+                @Override public void onAmend(long orderId, long portfolioId, int quantity) { }
+            });
+        }
+        assertThat(replayed).containsExactly(longSymbol, "ÄBC", "ÖBC");
+    }
+
+    @Test
+    void testReplaysMillionsOfEventsInSeconds() throws Exception {
+        String[] symbols = { "AAPL", "MSFT", "GOOG", "AMZN" };
+        int events = 2_000_000;
+        try (OrderJournal journal = new OrderJournal(dir, 16 << 20, false)) {
+            for (int i = 0; i < events; i++) {
+                int symbolId = i % symbols.length;
+                // Buys and sells alternate per symbol at one price, so every other order trades
+                boolean buy = (i / symbols.length) % 2 == 0;
+                journal.appendNewOrder(((long) (i + 1) << 8) | symbolId, symbolId, symbols[symbolId],
+                    1L, buy, 10_000 + (buy ? 0 : -1), 1);
+            }
+            journal.commit();
+        }
+
+        OrderMatchingService matcher = new OrderMatchingService(metricsService, tradeWriter);
+        OrderJournal journal = new OrderJournal(dir, 16 << 20, false);
+        OrderPipeline pipeline = pipeline(matcher, journal);
+        long started = System.nanoTime();
+        pipeline.start();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        pipeline.stop();
+        journal.close();
+
+        for (String symbol : symbols) {
+            assertThat(matcher.restingQuantity(symbol, Side.BUY)).isZero();
+            assertThat(matcher.restingQuantity(symbol, Side.SELL)).isZero();
+        }
+        assertThat(millis).isLessThan(TimeUnit.SECONDS.toMillis(10));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.OrderLatency.Stage;
+
+public class OrderLatencyTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OrderLatency latency = new OrderLatency(registry);
+
+    @Test
+    void testStagesAreRecordedSeparately() {
+        for (int i = 1; i <= 100; i++) latency.record(Stage.MATCH, TimeUnit.MICROSECONDS.toNanos(i));
+        latency.record(Stage.DB_WRITE, TimeUnit.MILLISECONDS.toNanos(40));
+        latency.record(Stage.HTTP_INSTANT_FILL, TimeUnit.MILLISECONDS.toNanos(25));
+
+        Map<String, Map<String, Object>> summary = latency.intervalSummary();
+
+        assertThat(summary.get("match")).containsEntry("count", 100L);
+        assertThat((double) summary.get("match").get("p99")).isBetween(98.0, 100.0);
+        assertThat(summary.get("db.write")).containsEntry("count", 1L);
+        assertThat(summary.get("http")).containsEntry("count", 0L);
+        assertThat(summary.get("http.instant-fill")).containsEntry("count", 1L);
+
+        Timer match = registry.get("orders.latency").tag("stage", "match").timer();
+        assertThat(match.count()).isEqualTo(100);
+    }
+
+    @Test
+    void testResetStartsANewIntervalButKeepsTimers() {
+        latency.record(Stage.PUBLISH, 5_000);
+        assertThat(latency.intervalSummary().get("publish")).containsEntry("count", 1L);
+
+        latency.reset();
+        latency.record(Stage.PUBLISH, 7_000);
+
+        assertThat(latency.intervalSummary().get("publish")).containsEntry("count", 1L);
+        assertThat(latency.intervalSummary().get("publish")).containsEntry("count", 1L); // reading does not reset
+        assertThat(registry.get("orders.latency").tag("stage", "publish").timer().count()).isEqualTo(2);
+    }
+}
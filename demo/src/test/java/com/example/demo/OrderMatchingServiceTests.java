@@ -1,31 +1,39 @@
 package com.example.demo;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import static org.mockito.Mockito.mock;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import com.example.demo.entity.Transaction;
-import com.example.demo.repository.PortfolioRepository;
-import com.example.demo.repository.TransactionRepository;
+import com.example.demo.dto.OrderBookDepth;
+import com.example.demo.service.MetricsService;
 import com.example.demo.service.OrderMatchingService;
+import com.example.demo.service.TradeWriter;
 
 @ExtendWith(MockitoExtension.class)
 public class OrderMatchingServiceTests {
-    @Mock TransactionRepository txnRepo;
-    @Mock PortfolioRepository portfolioRepo;
+    @Mock MetricsService metricsService;
+    @Mock TradeWriter tradeWriter;
     @InjectMocks OrderMatchingService service;
 
     @BeforeEach
@@ -37,8 +45,8 @@ public class OrderMatchingServiceTests {
     void testBuyOrderAddedToBookWhenSellBookEmpty() {
         OrderMatchingService.Order order = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.BUY, 100, BigDecimal.valueOf(150));
         service.placeOrder(order);
-        // No txnRepo.save() should be called
-        verify(txnRepo, never()).save(any());
+        // Nothing should be handed to the trade writer
+        verify(tradeWriter, never()).submit(any());
     }
 
     @Test
@@ -47,10 +55,9 @@ public class OrderMatchingServiceTests {
         OrderMatchingService.Order sell = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.SELL, 100, BigDecimal.valueOf(150));
         service.placeOrder(sell);
         // Now place a matching buy order
-        when(portfolioRepo.findById(anyLong())).thenReturn(Optional.of(mock(com.example.demo.entity.Portfolio.class)));
         OrderMatchingService.Order buy = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.BUY, 100, BigDecimal.valueOf(150));
         service.placeOrder(buy);
-        verify(txnRepo, times(1)).save(any(Transaction.class));
+        verify(tradeWriter, times(1)).submit(any(TradeWriter.TradeFill.class));
     }
 
     @Test
@@ -59,16 +66,88 @@ public class OrderMatchingServiceTests {
         OrderMatchingService.Order sell = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.SELL, 150, BigDecimal.valueOf(150));
         service.placeOrder(sell);
         // Now place a buy order for 100 shares
-        when(portfolioRepo.findById(anyLong())).thenReturn(Optional.of(mock(com.example.demo.entity.Portfolio.class)));
         OrderMatchingService.Order buy = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.BUY, 100, BigDecimal.valueOf(150));
         service.placeOrder(buy);
         // Should save one transaction for the matched quantity
-        verify(txnRepo, times(1)).save(any(Transaction.class));
+        verify(tradeWriter, times(1)).submit(any(TradeWriter.TradeFill.class));
         // The remaining 50 shares should still be in the sell book
         OrderMatchingService.Order remainingSell = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.SELL, 50, BigDecimal.valueOf(150));
         // Place another buy order for 50 shares
         OrderMatchingService.Order buy2 = new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.BUY, 50, BigDecimal.valueOf(150));
         service.placeOrder(buy2);
-        verify(txnRepo, times(2)).save(any(Transaction.class));
+        verify(tradeWriter, times(2)).submit(any(TradeWriter.TradeFill.class));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testConcurrentFloodAcrossSymbolsNeverCrossMatches() throws Exception {
+        // Symbols that trade against themselves: every buy has a sell at the same price
+        List<String> paired = List.of("AAPL", "MSFT", "GOOG", "AMZN");
+        // Crossing prices across different symbols: any fill here is a cross-symbol match
+        String buyOnly = "TSLA";
+        String sellOnly = "NFLX";
+        int ordersPerSide = 500;
+
+        List<Runnable> producers = new ArrayList<>();
+        for (String symbol : paired) {
+            producers.add(() -> placeMany(symbol, OrderMatchingService.Order.Side.BUY, ordersPerSide, 100));
+            producers.add(() -> placeMany(symbol, OrderMatchingService.Order.Side.SELL, ordersPerSide, 100));
+        }
+        producers.add(() -> placeMany(buyOnly, OrderMatchingService.Order.Side.BUY, ordersPerSide, 200));
+        producers.add(() -> placeMany(sellOnly, OrderMatchingService.Order.Side.SELL, ordersPerSide, 50));
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable producer : producers) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    producer.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ArgumentCaptor<TradeWriter.TradeFill> saved = ArgumentCaptor.forClass(TradeWriter.TradeFill.class);
+        verify(tradeWriter, atLeastOnce()).submit(saved.capture());
+        Map<String, Long> fillsBySymbol = saved.getAllValues().stream()
+            .collect(Collectors.groupingBy(TradeWriter.TradeFill::symbol, Collectors.counting()));
+
+        assertThat(fillsBySymbol).doesNotContainKeys(buyOnly, sellOnly);
+        for (String symbol : paired) {
+            assertThat(fillsBySymbol.get(symbol)).isEqualTo((long) ordersPerSide);
+            assertThat(service.restingQuantity(symbol, OrderMatchingService.Order.Side.BUY)).isZero();
+            assertThat(service.restingQuantity(symbol, OrderMatchingService.Order.Side.SELL)).isZero();
+        }
+        assertThat(service.restingQuantity(buyOnly, OrderMatchingService.Order.Side.BUY)).isEqualTo(ordersPerSide);
+        assertThat(service.restingQuantity(sellOnly, OrderMatchingService.Order.Side.SELL)).isEqualTo(ordersPerSide);
+    }
+
+    @Test
+    void testDepthAggregatesTopLevelsBestFirst() {
+        service.placeOrder(new OrderMatchingService.Order(1L, "AAPL", OrderMatchingService.Order.Side.BUY, 10, new BigDecimal("149.50")));
+        service.placeOrder(new OrderMatchingService.Order(2L, "AAPL", OrderMatchingService.Order.Side.BUY, 5, new BigDecimal("150.00")));
+        service.placeOrder(new OrderMatchingService.Order(3L, "AAPL", OrderMatchingService.Order.Side.BUY, 7, new BigDecimal("150.00")));
+        service.placeOrder(new OrderMatchingService.Order(4L, "AAPL", OrderMatchingService.Order.Side.BUY, 1, new BigDecimal("148.00")));
+        service.placeOrder(new OrderMatchingService.Order(5L, "AAPL", OrderMatchingService.Order.Side.SELL, 8, new BigDecimal("151.25")));
+
+        OrderBookDepth depth = service.depth("AAPL", 2);
+
+        assertThat(depth.getBids()).extracting(l -> l.getPrice().toPlainString(), OrderBookDepth.Level::getQuantity,
+                OrderBookDepth.Level::getOrders)
+            .containsExactly(tuple("150.00", 12L, 2), tuple("149.50", 10L, 1));
+        assertThat(depth.getAsks()).extracting(OrderBookDepth.Level::getQuantity).containsExactly(8L);
+        assertThat(service.depth("AAPL", 2).getVersion()).isEqualTo(depth.getVersion());
+        assertThat(service.depth("NOPE", 2).getBids()).isEmpty();
+    }
+
+    private void placeMany(String symbol, OrderMatchingService.Order.Side side, int count, int price) {
+        for (int i = 0; i < count; i++) {
+            service.placeOrder(new OrderMatchingService.Order(1L, symbol, side, 1, BigDecimal.valueOf(price)));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.example.demo.dto.OrderUpdate;
+import com.example.demo.service.MetricsService;
+import com.example.demo.service.OrderJournal;
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.OrderMatchingService;
+import com.example.demo.service.OrderPipeline;
+import com.example.demo.service.SnapshotStore;
+import com.example.demo.service.TradeWriter;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderPipelineTests {
+    @Mock MetricsService metricsService;
+    @Mock TradeWriter tradeWriter;
+    @Mock SimpMessagingTemplate messagingTemplate;
+
+    private OrderMatchingService matcher;
+    private OrderPipeline pipeline;
+
+    @BeforeEach
+    void setup() {
+        matcher = new OrderMatchingService(metricsService, tradeWriter);
+        pipeline = new OrderPipeline(matcher, messagingTemplate, metricsService,
+            new OrderLatency(new SimpleMeterRegistry()), OrderJournal.disabled(), SnapshotStore.disabled(), 0);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void teardown() {
+        pipeline.stop();
+    }
+
+    @Test
+    void testBurstFromManyProducersIsMatchedPersistedAndPublished() throws Exception {
+        List<String> symbols = List.of("AAPL", "MSFT", "GOOG", "AMZN");
+        int ordersPerSide = 1_000;
+
+        ExecutorService producers = Executors.newFixedThreadPool(symbols.size() * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String symbol : symbols) {
+                for (boolean buy : new boolean[] { true, false }) {
+                    futures.add(producers.submit(() -> {
+                        for (int i = 0; i < ordersPerSide; i++) {
+                            pipeline.submit(1L, symbol, buy, 10_000, 1);
+                        }
+                    }));
+                }
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            producers.shutdownNow();
+        }
+
+        assertThat(pipeline.awaitIdle(30, TimeUnit.SECONDS)).isTrue();
+        int totalOrders = symbols.size() * 2 * ordersPerSide;
+        verify(tradeWriter, times(symbols.size() * ordersPerSide)).submit(any(TradeWriter.TradeFill.class));
+
+        ArgumentCaptor<OrderUpdate> updates = ArgumentCaptor.forClass(OrderUpdate.class);
+        verify(messagingTemplate, times(totalOrders)).convertAndSend(anyString(), updates.capture());
+        assertThat(updates.getAllValues()).extracting(OrderUpdate::getOrderId)
+            .doesNotHaveDuplicates()
+            .hasSize(totalOrders);
+        long filled = updates.getAllValues().stream().mapToLong(OrderUpdate::getFilledQuantity).sum();
+        // Every fill is counted once on the taker's update
+        assertThat(filled).isEqualTo((long) symbols.size() * ordersPerSide);
+    }
+
+    @Test
+    void testCancelAndAmendReachRestingOrdersThroughTheRing() {
+        long first = pipeline.submit(7L, "TSLA", false, 25_000, 10);
+        long second = pipeline.submit(7L, "TSLA", false, 25_000, 10);
+        pipeline.amend(first, 7L, 4);
+        pipeline.cancel(second, 7L);
+        pipeline.cancel(first, 8L); // not the owner
+        assertThat(pipeline.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+
+        ArgumentCaptor<OrderUpdate> updates = ArgumentCaptor.forClass(OrderUpdate.class);
+        verify(messagingTemplate, times(5)).convertAndSend(anyString(), updates.capture());
+        assertThat(updates.getAllValues()).extracting(OrderUpdate::getStatus)
+            .containsExactly("NEW", "NEW", "AMENDED", "CANCELLED", "REJECTED");
+        assertThat(matcher.restingQuantity("TSLA", OrderMatchingService.Order.Side.SELL)).isEqualTo(4);
+    }
+}
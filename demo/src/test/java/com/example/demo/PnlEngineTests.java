@@ -0,0 +1,136 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.example.demo.dto.PnlReport;
+import com.example.demo.dto.TransactionRow;
+import com.example.demo.entity.TradeType;
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.PnlEngine;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.PositionLedger.Fill;
+
+@ExtendWith(MockitoExtension.class)
+public class PnlEngineTests {
+    @Mock SimpMessagingTemplate messagingTemplate;
+
+    private final MarketPrices prices = new MarketPrices();
+    private final PositionLedger ledger = new PositionLedger(portfolioId -> List.of());
+
+    private static TransactionRow row(TradeType type, int quantity, String price) {
+        return new TransactionRow(null, "TSLA", type, quantity, new BigDecimal(price), LocalDateTime.now());
+    }
+
+    private void trade(TradeType type, int quantity, String price) {
+        ledger.record(List.of(new Fill(1L, "TSLA", type, quantity, new BigDecimal(price))), () -> null);
+    }
+
+    private static PnlReport.PositionPnl tsla(PnlReport report) {
+        return report.positions().stream().filter(p -> p.symbol().equals("TSLA")).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testSellsCloseTheOldestLotsFirst() {
+        List<TransactionRow> history = List.of(
+            row(TradeType.BUY, 10, "100.00"),
+            row(TradeType.BUY, 10, "120.00"),
+            row(TradeType.SELL, 15, "130.00"));   // 10 @ 100 and 5 @ 120: realized 300 + 50
+        PnlEngine engine = new PnlEngine(ledger, prices, messagingTemplate, (portfolioId, sink) -> {
+            history.forEach(sink);
+            return history.size();
+        });
+        prices.update("TSLA", new BigDecimal("140.00"));
+
+        PnlReport report = engine.report(1L);
+        assertThat(report.realized()).isEqualByComparingTo("350.00");
+        assertThat(report.unrealized()).isEqualByComparingTo("100.00");  // 5 @ 120 marked at 140
+        assertThat(tsla(report).openLots()).isEqualTo(1);
+        assertThat(tsla(report).averageCost()).isEqualByComparingTo("120.00");
+
+        // Later fills arrive through the ledger: sell the rest, then go short and cover part of it
+        trade(TradeType.SELL, 8, "150.00");   // closes 5 @ 120 (+150), opens short 3 @ 150
+        trade(TradeType.BUY, 1, "145.00");    // covers 1 of the short (+5)
+        verifyNoInteractions(messagingTemplate);
+        engine.publishChanged();
+        ArgumentCaptor<PnlReport> pushed = ArgumentCaptor.forClass(PnlReport.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/portfolio/1/pnl"), pushed.capture());
+        PnlReport last = pushed.getValue();
+        assertThat(last.realized()).isEqualByComparingTo("505.00");
+        assertThat(tsla(last).shares()).isEqualTo(-2);
+        assertThat(last.unrealized()).isEqualByComparingTo("20.00");     // short 2 @ 150 marked at 140
+        assertThat(last.total()).isEqualByComparingTo("525.00");
+    }
+
+    @Test
+    void testTicksAreConflatedIntoOneReportPerInterval() {
+        PnlEngine engine = new PnlEngine(ledger, prices, messagingTemplate, (portfolioId, sink) -> 0);
+        prices.update("TSLA", new BigDecimal("100.00"));
+        engine.report(1L);
+        trade(TradeType.BUY, 10, "100.00");
+        engine.publishChanged();
+
+        for (int i = 1; i <= 50; i++) {
+            prices.update("TSLA", BigDecimal.valueOf(100 + i));
+            engine.onTick("TSLA");
+        }
+        engine.onTick("AAPL");   // held by nobody
+        engine.publishChanged();
+        engine.publishChanged();   // nothing moved since
+
+        ArgumentCaptor<PnlReport> pushed = ArgumentCaptor.forClass(PnlReport.class);
+        verify(messagingTemplate, times(2)).convertAndSend(eq("/topic/portfolio/1/pnl"), pushed.capture());
+        assertThat(pushed.getValue().unrealized()).isEqualByComparingTo("500.00");   // 10 @ 100 marked at 150
+    }
+
+    @Test
+    void testManyFillsStayLinearAndReconcile() {
+        PnlEngine engine = new PnlEngine(ledger, prices, messagingTemplate, (portfolioId, sink) -> 0);
+        prices.update("TSLA", new BigDecimal("100.00"));
+        engine.report(1L);
+
+        // 100k buys at rising prices, then one sell that closes all but the newest lot
+        int lots = 100_000;
+        for (int i = 0; i < lots; i++) trade(TradeType.BUY, 1, BigDecimal.valueOf(10_000 + i, 2).toPlainString());
+        trade(TradeType.SELL, lots - 1, "200.00");
+
+        PnlReport report = engine.report(1L);
+        assertThat(tsla(report).openLots()).isEqualTo(1);
+        assertThat(tsla(report).averageCost()).isEqualByComparingTo(BigDecimal.valueOf(10_000 + lots - 1, 2));
+        // sum over i < lots-1 of (200 - (100 + i/100))
+        BigDecimal expected = BigDecimal.valueOf(100L * (lots - 1))
+            .subtract(BigDecimal.valueOf((long) (lots - 1) * (lots - 2) / 2, 2));
+        assertThat(report.realized()).isEqualByComparingTo(expected);
+    }
+
+    @Test
+    void testEvictedPortfolioIsRebuiltFromHistory() {
+        List<TransactionRow> history = List.of(row(TradeType.BUY, 4, "50.00"));
+        PnlEngine engine = new PnlEngine(ledger, prices, messagingTemplate, (portfolioId, sink) -> {
+            history.forEach(sink);
+            return history.size();
+        });
+        prices.update("TSLA", new BigDecimal("55.00"));
+        assertThat(engine.report(1L).unrealized()).isEqualByComparingTo("20.00");
+
+        trade(TradeType.SELL, 4, "60.00");
+        assertThat(engine.report(1L).realized()).isEqualByComparingTo("40.00");
+        ledger.evict(1L);   // as after a failed write: the sell never reached the history
+        assertThat(engine.report(1L).realized()).isEqualByComparingTo("0");
+        assertThat(tsla(engine.report(1L)).shares()).isEqualTo(4);
+    }
+}
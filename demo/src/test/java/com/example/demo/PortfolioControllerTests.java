@@ -0,0 +1,89 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.demo.controller.PortfolioController;
+import com.example.demo.dto.TransactionRow;
+import com.example.demo.entity.TradeType;
+import com.example.demo.entity.Transaction;
+import com.example.demo.repository.PortfolioRepository;
+import com.example.demo.repository.StockRepository;
+import com.example.demo.repository.TransactionRepository;
+
+@WebMvcTest(PortfolioController.class)
+public class PortfolioControllerTests {
+    private static final LocalDateTime AT = LocalDateTime.of(2026, 3, 2, 9, 30);
+
+    @Autowired MockMvc mvc;
+    @MockitoBean PortfolioRepository portfolioRepository;
+    @MockitoBean TransactionRepository transactionRepository;
+    @MockitoBean PlatformTransactionManager transactionManager;
+    @MockitoBean StockRepository stockRepository; // for DemoApplication.initData
+
+    @BeforeEach
+    void setup() {
+        when(portfolioRepository.existsById(1L)).thenReturn(true);
+    }
+
+    @Test
+    void testPlainGetStillReturnsAJsonArray() throws Exception {
+        Transaction txn = new Transaction();
+        txn.setStockSymbol("AAPL");
+        txn.setType(TradeType.BUY);
+        txn.setQuantity(5);
+        txn.setPrice(new BigDecimal("150.00"));
+        when(transactionRepository.findByPortfolioId(1L)).thenReturn(List.of(txn));
+
+        // what the dashboard sends: fetch() with no Accept header of its own
+        mvc.perform(get("/api/portfolios/1/transactions").accept(MediaType.ALL))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$[0].stockSymbol").value("AAPL"))
+            .andExpect(jsonPath("$[0].quantity").value(5));
+    }
+
+    @Test
+    void testStreamRouteWritesOneJsonObjectPerLine() throws Exception {
+        when(transactionRepository.streamByPortfolioId(1L)).thenReturn(Stream.of(
+            new TransactionRow(2L, "MSFT", TradeType.SELL, 3, new BigDecimal("400.00"), AT.plusMinutes(1)),
+            new TransactionRow(1L, "AAPL", TradeType.BUY, 5, new BigDecimal("150.00"), AT)));
+
+        MvcResult started = mvc.perform(get("/api/portfolios/1/transactions/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = mvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":2,\"stockSymbol\":\"MSFT\"");
+        assertThat(lines[1]).startsWith("{\"id\":1,\"stockSymbol\":\"AAPL\"");
+
+        mvc.perform(get("/api/portfolios/1/transactions/stream").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotAcceptable());
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.demo.entity.PortfolioValueRollup;
+import com.example.demo.entity.RollupResolution;
+import com.example.demo.service.PortfolioValueRollups;
+import com.example.demo.service.PortfolioValueRollups.Snapshot;
+import com.example.demo.service.Upserts;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ PortfolioValueRollups.class, Upserts.class })
+public class PortfolioValueRollupsTests {
+    @Autowired PortfolioValueRollups rollups;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    private static Snapshot at(String time, String value) {
+        return new Snapshot(1L, Instant.parse(time), new BigDecimal(value));
+    }
+
+    @Test
+    void testSnapshotsFoldIntoEveryResolution() {
+        rollups.record(List.of(
+            at("2026-03-02T10:00:10Z", "100"),
+            at("2026-03-02T10:00:50Z", "120"),
+            at("2026-03-02T10:00:30Z", "90"),    // arrives late, lands mid-bucket
+            at("2026-03-02T10:01:05Z", "110")));
+        rollups.record(List.of(at("2026-03-02T11:30:00Z", "130")));
+
+        List<PortfolioValueRollup> minutes = rollups.range(1L, RollupResolution.MINUTE,
+            Instant.parse("2026-03-02T10:00:30Z"), Instant.parse("2026-03-02T10:01:30Z"));
+        assertThat(minutes).extracting(PortfolioValueRollup::getBucketStart)
+            .containsExactly(Instant.parse("2026-03-02T10:00:00Z"), Instant.parse("2026-03-02T10:01:00Z"));
+        PortfolioValueRollup first = minutes.get(0);
+        assertThat(first.getOpen()).isEqualByComparingTo("100");
+        assertThat(first.getHigh()).isEqualByComparingTo("120");
+        assertThat(first.getLow()).isEqualByComparingTo("90");
+        assertThat(first.getClose()).isEqualByComparingTo("120");
+        assertThat(first.getSamples()).isEqualTo(3);
+
+        List<PortfolioValueRollup> hours = rollups.range(1L, RollupResolution.HOUR,
+            Instant.parse("2026-03-02T00:00:00Z"), Instant.parse("2026-03-03T00:00:00Z"));
+        assertThat(hours).hasSize(2);
+        assertThat(hours.get(0).getClose()).isEqualByComparingTo("110");
+        assertThat(hours.get(0).getSamples()).isEqualTo(4);
+
+        PortfolioValueRollup day = rollups.range(1L, RollupResolution.DAY,
+            Instant.parse("2026-03-02T00:00:00Z"), Instant.parse("2026-03-03T00:00:00Z")).get(0);
+        assertThat(day.getOpen()).isEqualByComparingTo("100");
+        assertThat(day.getClose()).isEqualByComparingTo("130");
+        assertThat(day.getHigh()).isEqualByComparingTo("130");
+        assertThat(day.getSamples()).isEqualTo(5);
+    }
+
+    @Test
+    void testAYearReadsDailyBuckets() {
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (int hour = 0; hour < 365 * 24; hour++) {
+            snapshots.add(new Snapshot(2L, start.plus(Duration.ofHours(hour)), BigDecimal.valueOf(1_000 + hour)));
+        }
+        rollups.record(snapshots);
+
+        Instant end = start.plus(Duration.ofDays(365));
+        RollupResolution resolution = RollupResolution.forSpan(Duration.between(start, end), 500);
+        assertThat(resolution).isEqualTo(RollupResolution.DAY);
+        List<PortfolioValueRollup> days = rollups.range(2L, resolution, start, end);
+        assertThat(days).hasSize(365);
+        assertThat(days.get(364).getClose()).isEqualByComparingTo(BigDecimal.valueOf(1_000 + 365 * 24 - 1));
+        assertThat(days).allSatisfy(d -> assertThat(d.getSamples()).isEqualTo(24));
+    }
+
+    @Test
+    void testOnDuplicateKeySnapshotsMatchMerge() {
+        List<Snapshot> snapshots = List.of(
+            at("2026-03-02T10:00:10Z", "100"),
+            at("2026-03-02T10:00:50Z", "120"),
+            at("2026-03-02T10:00:30Z", "90"),
+            at("2026-03-02T10:01:05Z", "110"),
+            at("2026-03-02T09:59:59Z", "95"));
+        rollups.record(snapshots);
+
+        JdbcTemplate mysql = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:rollups;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        mysql.execute("CREATE TABLE portfolio_value_rollups (portfolio_id BIGINT, resolution VARCHAR(10), bucket_start TIMESTAMP,"
+            + " open_value DECIMAL(19,4), high_value DECIMAL(19,4), low_value DECIMAL(19,4), close_value DECIMAL(19,4),"
+            + " first_at TIMESTAMP, last_at TIMESTAMP, samples INT, PRIMARY KEY (portfolio_id, resolution, bucket_start))");
+        try {
+            new Upserts(mysql, true).applySnapshots(snapshots);
+
+            String select = "SELECT resolution, open_value, high_value, low_value, close_value, samples"
+                + " FROM portfolio_value_rollups WHERE portfolio_id = 1 ORDER BY resolution, bucket_start";
+            assertThat(mysql.queryForList(select)).hasSize(6).isEqualTo(jdbcTemplate.queryForList(select));
+        } finally {
+            mysql.execute("DROP TABLE portfolio_value_rollups");
+        }
+    }
+}
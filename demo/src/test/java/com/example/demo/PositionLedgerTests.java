@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.demo.entity.Position;
+import com.example.demo.entity.TradeType;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.PositionLedger.Fill;
+import com.example.demo.service.PositionLedger.Holding;
+
+public class PositionLedgerTests {
+    private final List<Position> stored = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final PositionLedger ledger = new PositionLedger(portfolioId -> {
+        loads.incrementAndGet();
+        return new ArrayList<>(stored);
+    });
+
+    private static Position row(String symbol, long quantity, String costBasis, String lastPrice) {
+        return new Position(1L, symbol, quantity, new BigDecimal(costBasis), new BigDecimal(lastPrice));
+    }
+
+    private void store(Fill fill) {
+        ledger.record(List.of(fill), () -> null);
+    }
+
+    @Test
+    void testLoadsPositionsOnceThenAppliesFillsIncrementally() {
+        stored.add(row("AAPL", 6, "900.00", "160.00"));
+        stored.add(row("MSFT", 2, "800.00", "400.00"));
+
+        // 6 AAPL at 160 plus 2 MSFT at 400
+        assertThat(ledger.lastTradeValue(1L)).isEqualByComparingTo("1760.00");
+
+        store(new Fill(1L, "AAPL", TradeType.BUY, 4, new BigDecimal("155.00")));
+        store(new Fill(1L, "MSFT", TradeType.SELL, 3, new BigDecimal("410.00")));
+
+        assertThat(loads).hasValue(1);
+        assertThat(ledger.value(1L, symbol -> new BigDecimal("100.00"))).isEqualByComparingTo("1000.00");
+        Map<String, Long> shares = new HashMap<>();
+        for (Holding h : ledger.holdings(1L)) shares.put(h.symbol(), h.shares());
+        assertThat(shares).containsEntry("AAPL", 10L).containsEntry("MSFT", -1L);
+    }
+
+    @Test
+    void testTracksAverageCostBasis() {
+        store(new Fill(2L, "TSLA", TradeType.BUY, 10, new BigDecimal("100.00")));
+        store(new Fill(2L, "TSLA", TradeType.BUY, 10, new BigDecimal("200.00")));
+        store(new Fill(2L, "TSLA", TradeType.SELL, 5, new BigDecimal("250.00")));
+
+        Holding tsla = ledger.holdings(2L).get(0);
+        assertThat(tsla.shares()).isEqualTo(15);
+        assertThat(tsla.costBasis()).isEqualByComparingTo("2250.00");
+        assertThat(tsla.averageCost()).isEqualByComparingTo("150.00");
+
+        store(new Fill(2L, "TSLA", TradeType.SELL, 20, new BigDecimal("240.00")));
+        store(new Fill(2L, "TSLA", TradeType.BUY, 8, new BigDecimal("230.00")));
+        tsla = ledger.holdings(2L).get(0);
+        // Covered the 5 short and opened 3 long at the covering price
+        assertThat(tsla.shares()).isEqualTo(3);
+        assertThat(tsla.costBasis()).isEqualByComparingTo("690.00");
+    }
+
+    @Test
+    void testFailedWriteIsNotKeptAndTheLedgerReloads() {
+        stored.add(row("GOOG", 5, "950.00", "190.00"));
+        assertThat(ledger.lastTradeValue(3L)).isEqualByComparingTo("950.00");
+
+        Fill lost = new Fill(3L, "GOOG", TradeType.BUY, 100, new BigDecimal("191.00"));
+        assertThatThrownBy(() -> ledger.record(List.of(lost), () -> {
+            throw new IllegalStateException("database down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(ledger.lastTradeValue(3L)).isEqualByComparingTo("950.00");
+        assertThat(loads).hasValue(2);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.demo.service.PriceBroadcaster;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+public class PriceBroadcasterTests {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final List<Message<?>> sent = new ArrayList<>();
+    /** Outbound tasks not yet run, standing in for a session that is slow to take frames. */
+    private final List<Runnable> backlog = new ArrayList<>();
+
+    private PriceBroadcaster broadcaster(boolean slow) {
+        ExecutorSubscribableChannel outbound = slow ? new ExecutorSubscribableChannel(backlog::add) : new ExecutorSubscribableChannel();
+        outbound.subscribe(sent::add);
+        return new PriceBroadcaster(outbound, objectMapper, 100);
+    }
+
+    @Test
+    void testOneFramePerSubscriptionWithTheLatestPrices() throws Exception {
+        PriceBroadcaster broadcaster = broadcaster(false);
+        subscribe(broadcaster, "s1", "sub-0", "/topic/prices/AAPL,GOOG,MSFT");
+        subscribe(broadcaster, "s2", "sub-0", "/topic/prices/AAPL");
+
+        broadcaster.offer("AAPL", new BigDecimal("150.00"));
+        broadcaster.offer("AAPL", new BigDecimal("151.00"));
+        broadcaster.offer("GOOG", new BigDecimal("2800.00"));
+        broadcaster.offer("TSLA", new BigDecimal("250.00"));   // nobody is watching
+        broadcaster.flush();
+
+        assertThat(sent).hasSize(2);
+        JsonNode batch = payload(frameFor("s1"));
+        assertThat(batch.isArray()).isTrue();
+        assertThat(batch).hasSize(2);
+        assertThat(batch.findValuesAsText("symbol")).containsExactlyInAnyOrder("AAPL", "GOOG");
+        assertThat(batch.findValues("price")).extracting(JsonNode::asDouble).containsExactlyInAnyOrder(151.0, 2800.0);
+        assertThat(SimpMessageHeaderAccessor.getSubscriptionId(frameFor("s1").getHeaders())).isEqualTo("sub-0");
+
+        JsonNode single = payload(frameFor("s2"));
+        assertThat(single.get("symbol").asText()).isEqualTo("AAPL");
+        assertThat(single.get("price").asDouble()).isEqualTo(151.0);
+
+        sent.clear();
+        broadcaster.flush();
+        assertThat(sent).isEmpty();
+        assertThat(broadcaster.framesSent()).isEqualTo(2);
+    }
+
+    @Test
+    void testSlowSessionGetsOnlyTheLatestOnceItCatchesUp() throws Exception {
+        PriceBroadcaster broadcaster = broadcaster(true);
+        subscribe(broadcaster, "s1", "sub-0", "/topic/prices/AAPL,GOOG");
+
+        broadcaster.offer("AAPL", new BigDecimal("1"));
+        broadcaster.flush();
+        assertThat(backlog).hasSize(1);
+
+        // still working through the first frame: nothing more is queued for it
+        for (int i = 2; i <= 50; i++) {
+            broadcaster.offer("AAPL", BigDecimal.valueOf(i));
+            broadcaster.offer("GOOG", BigDecimal.valueOf(1000 + i));
+            broadcaster.flush();
+        }
+        assertThat(backlog).hasSize(1);
+        assertThat(broadcaster.updatesConflated()).isGreaterThanOrEqualTo(96);
+
+        backlog.remove(0).run();
+        broadcaster.flush();
+        assertThat(backlog).hasSize(1);
+        backlog.remove(0).run();
+        assertThat(sent).hasSize(2);
+        JsonNode caughtUp = payload(sent.get(1));
+        assertThat(caughtUp.findValues("price")).extracting(JsonNode::asDouble).containsExactlyInAnyOrder(50.0, 1050.0);
+    }
+
+    @Test
+    void testDisconnectedSessionsGetNothing() {
+        PriceBroadcaster broadcaster = broadcaster(false);
+        subscribe(broadcaster, "s1", "sub-0", "/topic/prices/AAPL");
+        subscribe(broadcaster, "s1", "sub-1", "/topic/depth/AAPL");
+        broadcaster.onDisconnect(new SessionDisconnectEvent(this,
+            MessageBuilder.createMessage(new byte[0], StompHeaderAccessor.create(StompCommand.DISCONNECT).getMessageHeaders()),
+            "s1", CloseStatus.NORMAL));
+
+        broadcaster.offer("AAPL", new BigDecimal("150.00"));
+        broadcaster.flush();
+        assertThat(sent).isEmpty();
+    }
+
+    private Message<?> frameFor(String session) {
+        return sent.stream()
+            .filter(m -> session.equals(SimpMessageHeaderAccessor.getSessionId(m.getHeaders())))
+            .findFirst().orElseThrow();
+    }
+
+    private JsonNode payload(Message<?> message) throws Exception {
+        return objectMapper.readTree(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+    }
+
+    private static void subscribe(PriceBroadcaster broadcaster, String session, String subscription, String destination) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        headers.setSessionId(session);
+        headers.setSubscriptionId(subscription);
+        headers.setDestination(destination);
+        broadcaster.onSubscribe(new SessionSubscribeEvent(PriceBroadcasterTests.class,
+            MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders())));
+    }
+}
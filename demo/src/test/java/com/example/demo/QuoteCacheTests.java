@@ -0,0 +1,150 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.QuoteCache;
+
+public class QuoteCacheTests {
+    private final MarketPrices fallback = new MarketPrices();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        QuoteCache cache = new QuoteCache(symbol -> {
+            loads.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new BigDecimal("123.45");
+        }, fallback, Runnable::run, now::get, 60_000, 600_000, 100);
+
+        ExecutorService readers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<BigDecimal>> prices = new ArrayList<>();
+            for (int i = 0; i < 16; i++) prices.add(readers.submit(() -> cache.price("AAPL")));
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<BigDecimal> price : prices) {
+                assertThat(price.get(5, TimeUnit.SECONDS)).isEqualByComparingTo("123.45");
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(cache.price("AAPL")).isEqualByComparingTo("123.45");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void testStaleQuoteIsServedWhileOneRefreshRuns() {
+        List<Runnable> background = new ArrayList<>();
+        AtomicInteger version = new AtomicInteger(100);
+        QuoteCache cache = new QuoteCache(symbol -> {
+            loads.incrementAndGet();
+            return BigDecimal.valueOf(version.getAndIncrement());
+        }, fallback, background::add, now::get, 60_000, 600_000, 100);
+
+        assertThat(cache.price("MSFT")).isEqualByComparingTo("100");
+        now.addAndGet(120_000);                        // stale, but within max-stale
+        assertThat(cache.price("MSFT")).isEqualByComparingTo("100");
+        assertThat(cache.price("MSFT")).isEqualByComparingTo("100");
+        assertThat(background).hasSize(1);             // the second reader joined the first refresh
+        background.get(0).run();
+        assertThat(cache.price("MSFT")).isEqualByComparingTo("101");
+        assertThat(loads).hasValue(2);
+
+        now.addAndGet(3_600_000);                      // too old to serve: load inline
+        assertThat(cache.price("MSFT")).isEqualByComparingTo("102");
+    }
+
+    @Test
+    void testSizeIsBoundedAndFailedLoadsFallBack() {
+        QuoteCache cache = new QuoteCache(symbol -> symbol.startsWith("X") ? null : BigDecimal.ONE,
+            fallback, Runnable::run, now::get, 60_000, 600_000, 3);
+        for (String symbol : List.of("A", "B", "C", "D", "E")) cache.price(symbol);
+        assertThat(cache.size()).isEqualTo(3);
+
+        assertThat(cache.price("XYZ")).isEqualByComparingTo(MarketPrices.referencePrice("XYZ"));
+        assertThat(cache.refresh("XYZ")).isNull();
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    void testFiftyMissesCostAboutOneRoundTrip() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        try {
+            QuoteCache cache = new QuoteCache(symbol -> {
+                loads.incrementAndGet();
+                sleep(200);
+                return new BigDecimal("10.00");
+            }, fallback, pool, now::get, 60_000, 600_000, 100);
+            List<String> symbols = new ArrayList<>();
+            for (int i = 0; i < 50; i++) symbols.add("SYM" + i);
+
+            long started = System.nanoTime();
+            Map<String, BigDecimal> prices = cache.prices(symbols, Duration.ofSeconds(5)).get(5, TimeUnit.SECONDS);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertThat(prices).containsOnlyKeys(symbols);
+            assertThat(prices.keySet()).containsExactlyElementsOf(symbols);
+            assertThat(prices.values()).allSatisfy(p -> assertThat(p).isEqualByComparingTo("10.00"));
+            assertThat(loads).hasValue(50);
+            assertThat(elapsedMs).isLessThan(1_500);   // fifty sequential loads would take 10s
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDeadlineFallsBackToLastKnownPrice() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            AtomicInteger calls = new AtomicInteger();
+            QuoteCache cache = new QuoteCache(symbol -> {
+                if (calls.incrementAndGet() > 1) sleep(5_000);   // the API hangs after the first call
+                return new BigDecimal("42.00");
+            }, fallback, pool, now::get, 60_000, 600_000, 100);
+            cache.refresh("TSLA");
+            now.addAndGet(3_600_000);                              // too old to serve without reloading
+
+            long started = System.nanoTime();
+            Map<String, BigDecimal> prices = cache.prices(List.of("TSLA", "AMZN"), Duration.ofMillis(300))
+                .get(5, TimeUnit.SECONDS);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertThat(elapsedMs).isLessThan(2_000);
+            assertThat(prices.get("TSLA")).isEqualByComparingTo("42.00");
+            assertThat(prices.get("AMZN")).isEqualByComparingTo(MarketPrices.referencePrice("AMZN"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.example.demo.service.QuoteDemand;
+
+public class QuoteDemandTests {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final QuoteDemand demand = new QuoteDemand(now::get, 60_000);
+
+    @Test
+    void testSubscriptionsAreCountedUntilUnsubscribeOrDisconnect() {
+        subscribe(demand, "s1", "sub-0", "/topic/prices/AAPL");
+        subscribe(demand, "s1", "sub-1", "/topic/prices/GOOG");
+        subscribe(demand, "s2", "sub-0", "/topic/prices/AAPL");
+        subscribe(demand, "s2", "sub-1", "/topic/portfolio/1/pnl");
+        subscribe(demand, "s3", "sub-0", "/topic/prices/AAPL,MSFT");
+        assertThat(demand.subscriberCount("AAPL")).isEqualTo(3);
+        assertThat(demand.subscribedSymbols()).containsExactlyInAnyOrder("AAPL", "GOOG", "MSFT");
+        demand.onDisconnect(new SessionDisconnectEvent(this,
+            message(StompCommand.DISCONNECT, "s3", null, null), "s3", CloseStatus.NORMAL));
+        assertThat(demand.subscribedSymbols()).containsExactlyInAnyOrder("AAPL", "GOOG");
+
+        demand.onUnsubscribe(new SessionUnsubscribeEvent(this, message(StompCommand.UNSUBSCRIBE, "s2", "sub-0", null)));
+        assertThat(demand.subscriberCount("AAPL")).isEqualTo(1);
+
+        demand.onDisconnect(new SessionDisconnectEvent(this,
+            message(StompCommand.DISCONNECT, "s1", null, null), "s1", CloseStatus.NORMAL));
+        assertThat(demand.subscribedSymbols()).isEmpty();
+        // a second disconnect for the same session changes nothing
+        demand.onDisconnect(new SessionDisconnectEvent(this,
+            message(StompCommand.DISCONNECT, "s1", null, null), "s1", CloseStatus.NORMAL));
+        assertThat(demand.subscriberCount("AAPL")).isZero();
+    }
+
+    @Test
+    void testRestReadsDecayWithTheHalfLife() {
+        for (int i = 0; i < 8; i++) demand.recordRead("MSFT");
+        assertThat(demand.priority("MSFT")).isCloseTo(8, within(1e-9));
+        now.addAndGet(60_000);
+        assertThat(demand.priority("MSFT")).isCloseTo(4, within(1e-9));
+        demand.recordRead("MSFT");
+        now.addAndGet(120_000);
+        assertThat(demand.priority("MSFT")).isCloseTo(5 / 4.0, within(1e-9));
+
+        subscribe(demand, "s1", "sub-0", "/topic/prices/IBM");
+        assertThat(demand.priority("IBM")).isGreaterThan(demand.priority("MSFT"));
+        assertThat(demand.priority("NONE")).isZero();
+    }
+
+    static void subscribe(QuoteDemand demand, String session, String subscription, String destination) {
+        demand.onSubscribe(new SessionSubscribeEvent(QuoteDemandTests.class,
+            message(StompCommand.SUBSCRIBE, session, subscription, destination)));
+    }
+
+    private static Message<byte[]> message(StompCommand command, String session, String subscription, String destination) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(command);
+        headers.setSessionId(session);
+        if (subscription != null) headers.setSubscriptionId(subscription);
+        if (destination != null) headers.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+}
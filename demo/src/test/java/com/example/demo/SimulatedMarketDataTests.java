@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.example.demo.service.MarketPrices;
+import com.example.demo.service.SimulatedMarketData;
+
+public class SimulatedMarketDataTests {
+    private static final double TRADING_YEAR_SECONDS = 252 * 6.5 * 3600;
+
+    private static SimulatedMarketData market(int symbols, int ticksPerSecond, double correlation) {
+        return new SimulatedMarketData(List.of("AAPL", "GOOG"), symbols, ticksPerSecond, 0.0, 0.3, correlation, 60, 7);
+    }
+
+    @Test
+    void testUniverseStartsAtReferencePrices() {
+        SimulatedMarketData market = market(3000, 10_000, 0.5);
+        assertThat(market.symbols()).hasSize(3000).startsWith("AAPL", "GOOG", "SIM00001").endsWith("SIM02998");
+        assertThat(market.fetchPrice("AAPL")).isEqualByComparingTo(MarketPrices.referencePrice("AAPL"));
+        assertThat(market.fetchPrice("SIM00042")).isEqualByComparingTo(MarketPrices.referencePrice("SIM00042"));
+        assertThat(market.fetchPrice("NOPE")).isNull();
+        assertThat(market.availableCalls()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void testReturnsHaveTheConfiguredVolatilityAndCorrelation() {
+        SimulatedMarketData market = market(2, 10_000, 0.6);
+        Map<String, List<Double>> returns = new HashMap<>(Map.of("AAPL", new ArrayList<>(), "GOOG", new ArrayList<>()));
+        Map<String, Double> last = new HashMap<>();
+        last.put("AAPL", market.fetchPrice("AAPL").doubleValue());
+        last.put("GOOG", market.fetchPrice("GOOG").doubleValue());
+        // one trading hour per round, so 4-decimal rounding of prices does not swamp the moves
+        for (int round = 0; round < 20_000; round++) {
+            market.generate(2, 3600, (symbol, price) -> {
+                returns.get(symbol).add(Math.log(price.doubleValue() / last.get(symbol)));
+                last.put(symbol, price.doubleValue());
+            });
+        }
+
+        double[] a = returns.get("AAPL").stream().mapToDouble(Double::doubleValue).toArray();
+        double[] g = returns.get("GOOG").stream().mapToDouble(Double::doubleValue).toArray();
+        double annualized = Math.sqrt(variance(a) * TRADING_YEAR_SECONDS / 3600);
+        assertThat(annualized).isCloseTo(0.3, within(0.01));
+        assertThat(covariance(a, g) / Math.sqrt(variance(a) * variance(g))).isCloseTo(0.6, within(0.03));
+        assertThat(market.ticks()).isEqualTo(40_000);
+    }
+
+    @Test
+    void testStreamRunsAtTheConfiguredRate() throws Exception {
+        SimulatedMarketData market = market(5000, 20_000, 0.5);
+        AtomicLong received = new AtomicLong();
+        market.stream((symbol, price) -> received.incrementAndGet());
+        Thread.sleep(500);
+        market.destroy();
+        Thread.sleep(100);
+        // about 10k in half a second; generous bounds for a loaded build machine
+        assertThat(received.get()).isBetween(2_000L, 12_000L);
+        assertThat(market.ticks()).isEqualTo(received.get());
+    }
+
+    private static double variance(double[] x) {
+        return covariance(x, x);
+    }
+
+    private static double covariance(double[] x, double[] y) {
+        double mx = 0, my = 0;
+        for (int i = 0; i < x.length; i++) { mx += x[i]; my += y[i]; }
+        mx /= x.length;
+        my /= y.length;
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) sum += (x[i] - mx) * (y[i] - my);
+        return sum / (x.length - 1);
+    }
+}
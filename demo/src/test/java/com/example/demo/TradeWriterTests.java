@@ -0,0 +1,263 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import com.example.demo.entity.Portfolio;
+import com.example.demo.entity.Position;
+import com.example.demo.entity.RollupResolution;
+import com.example.demo.entity.TradeType;
+import com.example.demo.entity.Transaction;
+import com.example.demo.entity.User;
+import com.example.demo.repository.PortfolioRepository;
+import com.example.demo.repository.PortfolioValueHistoryRepository;
+import com.example.demo.repository.PositionRepository;
+import com.example.demo.repository.SymbolQuantity;
+import com.example.demo.repository.TransactionRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.IdBlocks;
+import com.example.demo.service.OrderLatency;
+import com.example.demo.service.PortfolioValueRollups;
+import com.example.demo.service.PositionLedger;
+import com.example.demo.service.TradeWriter;
+import com.example.demo.service.Upserts;
+import com.example.demo.service.ValueSeriesStore;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ TradeWriter.class, IdBlocks.class, Upserts.class, PositionLedger.class, PortfolioValueRollups.class, ValueSeriesStore.class, OrderLatency.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the writer commits on its own thread
+public class TradeWriterTests {
+    @Autowired TradeWriter tradeWriter;
+    @Autowired UserRepository userRepository;
+    @Autowired PortfolioRepository portfolioRepository;
+    @Autowired TransactionRepository transactionRepository;
+    @Autowired PortfolioValueHistoryRepository historyRepository;
+    @Autowired PositionRepository positionRepository;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PositionLedger ledger;
+    @Autowired PortfolioValueRollups rollups;
+    @Autowired Upserts upserts;
+
+    private Portfolio portfolio;
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate.update("DELETE FROM portfolio_value_history");
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM positions");
+        jdbcTemplate.update("DELETE FROM portfolio_value_rollups");
+        User user = new User();
+        user.setUsername("writer" + System.nanoTime());
+        user.setPasswordHash("hash");
+        user = userRepository.save(user);
+        portfolio = new Portfolio();
+        portfolio.setUser(user);
+        portfolio = portfolioRepository.save(portfolio);
+        tradeWriter.start();
+    }
+
+    @Test
+    void testQueuedFillsAreFlushedOnStopAsOneSnapshotPerPortfolio() {
+        Instant now = Instant.now();
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "AAPL", TradeType.BUY, 10, new BigDecimal("150.00"), now));
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "AAPL", TradeType.BUY, 5, new BigDecimal("151.00"), now));
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "MSFT", TradeType.BUY, 2, new BigDecimal("400.00"), now));
+
+        tradeWriter.stop();
+
+        assertThat(tradeWriter.backlog()).isZero();
+        assertThat(transactionRepository.findByPortfolioId(portfolio.getId())).hasSize(3);
+        var history = historyRepository.findByPortfolioIdOrderByTimestampAsc(portfolio.getId());
+        assertThat(history).isNotEmpty();
+        // 15 AAPL at the last trade price of 151 plus 2 MSFT at 400
+        assertThat(history.get(history.size() - 1).getValue()).isEqualByComparingTo("3065.00");
+        var day = rollups.range(portfolio.getId(), RollupResolution.DAY, now.minus(Duration.ofDays(1)), now.plusSeconds(1));
+        assertThat(day).hasSize(1);
+        assertThat(day.get(0).getClose()).isEqualByComparingTo("3065.00");
+    }
+
+    @Test
+    void testPositionsAreMaintainedWithTheTransactionsAndReconcile() {
+        Instant now = Instant.now();
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "TSLA", TradeType.BUY, 10, new BigDecimal("100.00"), now));
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "TSLA", TradeType.BUY, 10, new BigDecimal("200.00"), now));
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "TSLA", TradeType.SELL, 5, new BigDecimal("250.00"), now));
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "GOOG", TradeType.SELL, 3, new BigDecimal("190.00"), now));
+
+        tradeWriter.stop();
+
+        Position tsla = positionRepository.findById(new Position.Key(portfolio.getId(), "TSLA")).orElseThrow();
+        assertThat(tsla.getQuantity()).isEqualTo(15);
+        assertThat(tsla.getCostBasis()).isEqualByComparingTo("2250.00");
+        assertThat(tsla.getLastPrice()).isEqualByComparingTo("250.00");
+        Position goog = positionRepository.findById(new Position.Key(portfolio.getId(), "GOOG")).orElseThrow();
+        assertThat(goog.getQuantity()).isEqualTo(-3);
+        assertThat(goog.getCostBasis()).isEqualByComparingTo("0");
+
+        assertThat(positionRepository.netQuantityBySymbol())
+            .extracting(SymbolQuantity::getSymbol, SymbolQuantity::getQuantity)
+            .containsExactlyElementsOf(transactionRepository.netQuantityBySymbol().stream()
+                .map(q -> tuple(q.getSymbol(), q.getQuantity())).toList());
+    }
+
+    @Test
+    void testColdPortfolioIsValuedFromAHandfulOfRows() {
+        Instant now = Instant.now();
+        String[] symbols = { "AAPL", "MSFT", "GOOG", "AMZN", "TSLA" };
+        for (int i = 0; i < 100_000; i++) {
+            TradeType type = i % 3 == 2 ? TradeType.SELL : TradeType.BUY;
+            tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), symbols[i % symbols.length], type, 1,
+                new BigDecimal("100.00"), now));
+        }
+        tradeWriter.stop();
+
+        List<Position> rows = positionRepository.findByPortfolioId(portfolio.getId());
+        assertThat(rows).hasSize(symbols.length);
+        // A fresh ledger, as after a restart, agrees with the one that saw every fill
+        PositionLedger cold = new PositionLedger(positionRepository);
+        assertThat(cold.lastTradeValue(portfolio.getId())).isEqualByComparingTo(ledger.lastTradeValue(portfolio.getId()));
+        assertThat(cold.lastTradeValue(portfolio.getId())).isEqualByComparingTo("3333400.00");
+    }
+
+    @Test
+    void testControllerAppliesFillsWithTheSameStatement(@Autowired PlatformTransactionManager transactionManager) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            upserts.applyFills(List.of(new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.BUY, 10, new BigDecimal("180.00"))));
+            upserts.applyFills(List.of(new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.SELL, 4, new BigDecimal("185.00"))));
+        });
+
+        Position amzn = positionRepository.findById(new Position.Key(portfolio.getId(), "AMZN")).orElseThrow();
+        assertThat(amzn.getQuantity()).isEqualTo(6);
+        assertThat(amzn.getCostBasis()).isEqualByComparingTo("1080.00");
+    }
+
+    @Test
+    void testOnDuplicateKeyFillsMatchMerge() {
+        // buy, partial sell, flip short, cover past flat, add to the long
+        List<PositionLedger.Fill> fills = List.of(
+            new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.BUY, 10, new BigDecimal("180.00")),
+            new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.SELL, 4, new BigDecimal("185.00")),
+            new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.SELL, 10, new BigDecimal("190.00")),
+            new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.BUY, 6, new BigDecimal("200.00")),
+            new PositionLedger.Fill(portfolio.getId(), "AMZN", TradeType.BUY, 3, new BigDecimal("210.00")));
+        upserts.applyFills(fills);
+
+        JdbcTemplate mysql = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:upserts;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        mysql.execute("CREATE TABLE positions (portfolio_id BIGINT, symbol VARCHAR(255), quantity BIGINT,"
+            + " cost_basis DECIMAL(19,4), last_price DECIMAL(19,4), PRIMARY KEY (portfolio_id, symbol))");
+        try {
+            new Upserts(mysql, true).applyFills(fills);
+
+            String select = "SELECT quantity, cost_basis, last_price FROM positions WHERE symbol = 'AMZN'";
+            List<Object> merged = jdbcTemplate.queryForList(select).get(0).values().stream().toList();
+            List<Object> onDuplicateKey = mysql.queryForList(select).get(0).values().stream().toList();
+            assertThat(onDuplicateKey).isEqualTo(merged);
+            assertThat(merged.get(0)).isEqualTo(5L);
+            assertThat((BigDecimal) merged.get(1)).isEqualByComparingTo("1030.00");
+        } finally {
+            mysql.execute("DROP TABLE positions");
+        }
+    }
+
+    @Test
+    void testBatchThatKeepsFailingIsParkedNotDropped(@TempDir Path dir, @Autowired IdBlocks idBlocks,
+                                                      @Autowired PlatformTransactionManager transactionManager,
+                                                      @Autowired ValueSeriesStore series) throws Exception {
+        Path deadLetters = dir.resolve("dead-letter.csv");
+        TradeWriter failing = new TradeWriter(jdbcTemplate, idBlocks, upserts, transactionManager, ledger, rollups, series,
+            new OrderLatency(new SimpleMeterRegistry()), 16, 16, 3, 1, deadLetters.toString());
+        Instant now = Instant.parse("2026-03-02T14:30:00Z");
+        // queued before the writer starts, so all land in one batch
+        for (int i = 0; i < 5; i++) {
+            failing.submit(new TradeWriter.TradeFill(portfolio.getId(), "MSFT", TradeType.BUY, 1, new BigDecimal("400.00"), now));
+        }
+        // no such portfolio: the foreign key fails on every attempt
+        failing.submit(new TradeWriter.TradeFill(987_654L, "AAPL", TradeType.BUY, 7, new BigDecimal("150.25"), now));
+        for (int i = 0; i < 5; i++) {
+            failing.submit(new TradeWriter.TradeFill(portfolio.getId(), "MSFT", TradeType.BUY, 1, new BigDecimal("400.00"), now));
+        }
+        failing.start();
+        failing.stop();
+
+        assertThat(Files.readAllLines(deadLetters)).containsExactly("987654,AAPL,BUY,7,150.25,2026-03-02T14:30:00Z");
+        assertThat(transactionRepository.findByPortfolioId(portfolio.getId())).hasSize(10);
+        assertThat(positionRepository.findById(new Position.Key(portfolio.getId(), "MSFT")).orElseThrow().getQuantity()).isEqualTo(10);
+    }
+
+    @Test
+    void testSeriesFailureAfterCommitDoesNotRewriteTheBatch(@TempDir Path dir, @Autowired IdBlocks idBlocks,
+                                                            @Autowired PlatformTransactionManager transactionManager) throws Exception {
+        ValueSeriesStore full = new ValueSeriesStore(dir, 1024) {
+            @Override
+            public void append(long portfolioId, Instant timestamp, BigDecimal value) {
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            }
+        };
+        Path deadLetters = dir.resolve("dead-letter.csv");
+        TradeWriter writer = new TradeWriter(jdbcTemplate, idBlocks, upserts, transactionManager, ledger, rollups, full,
+            new OrderLatency(new SimpleMeterRegistry()), 16, 16, 3, 1, deadLetters.toString());
+        writer.start();
+        writer.submit(new TradeWriter.TradeFill(portfolio.getId(), "AAPL", TradeType.BUY, 7, new BigDecimal("150.25"), Instant.now()));
+        writer.stop();
+
+        assertThat(transactionRepository.findByPortfolioId(portfolio.getId())).hasSize(1);
+        assertThat(positionRepository.findById(new Position.Key(portfolio.getId(), "AAPL")).orElseThrow().getQuantity()).isEqualTo(7);
+        assertThat(writer.seriesFailures()).isEqualTo(1);
+        assertThat(deadLetters).doesNotExist();
+    }
+
+    @Test
+    void testWriterAndRepositoryDrawIdsFromTheSameSequence() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 120; i++) {
+            tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "AAPL", TradeType.BUY, 1, new BigDecimal("150.00"), now));
+        }
+        tradeWriter.stop();
+        List<Transaction> saved = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Transaction txn = new Transaction();
+            txn.setPortfolio(portfolio);
+            txn.setStockSymbol("MSFT");
+            txn.setType(TradeType.BUY);
+            txn.setQuantity(1);
+            txn.setPrice(new BigDecimal("400.00"));
+            saved.add(txn);
+        }
+        transactionRepository.saveAll(saved);
+        tradeWriter.start();
+        tradeWriter.submit(new TradeWriter.TradeFill(portfolio.getId(), "AAPL", TradeType.SELL, 1, new BigDecimal("151.00"), now));
+        tradeWriter.stop();
+
+        List<Transaction> all = transactionRepository.findByPortfolioId(portfolio.getId());
+        assertThat(all).hasSize(241);
+        assertThat(all).extracting(Transaction::getId).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.demo.dto.TransactionPage;
+import com.example.demo.dto.TransactionRow;
+import com.example.demo.entity.Portfolio;
+import com.example.demo.entity.User;
+import com.example.demo.repository.PortfolioRepository;
+import com.example.demo.repository.TransactionRepository;
+import com.example.demo.repository.UserRepository;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class TransactionHistoryTests {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 30);
+
+    @Autowired UserRepository userRepository;
+    @Autowired PortfolioRepository portfolioRepository;
+    @Autowired TransactionRepository transactionRepository;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    private Portfolio portfolio;
+
+    @BeforeEach
+    void setup() {
+        User user = new User();
+        user.setUsername("history");
+        user.setPasswordHash("hash");
+        user = userRepository.save(user);
+        portfolio = new Portfolio();
+        portfolio.setUser(user);
+        portfolio = portfolioRepository.saveAndFlush(portfolio);
+
+        // 25 trades over 10 distinct timestamps, so pages have to break ties on id
+        for (int i = 0; i < 25; i++) {
+            jdbcTemplate.update("INSERT INTO transactions (id, portfolio_id, stock_symbol, quantity, price, type, timestamp)"
+                + " VALUES (?, ?, 'AAPL', ?, 150.00, 'BUY', ?)",
+                1_000_000 + i, portfolio.getId(), i + 1, Timestamp.valueOf(START.plusSeconds(i / 3)));
+        }
+    }
+
+    @Test
+    void testPagesWalkTheWholeHistoryNewestFirst() {
+        List<TransactionRow> walked = new ArrayList<>();
+        TransactionPage page = TransactionPage.of(transactionRepository.findPage(portfolio.getId(), Limit.of(7)), 7);
+        walked.addAll(page.items());
+        while (page.nextCursor() != null) {
+            TransactionPage.Cursor after = TransactionPage.Cursor.decode(page.nextCursor());
+            page = TransactionPage.of(
+                transactionRepository.findPageBefore(portfolio.getId(), after.timestamp(), after.id(), Limit.of(7)), 7);
+            walked.addAll(page.items());
+        }
+
+        assertThat(walked).hasSize(25);
+        assertThat(walked).extracting(TransactionRow::quantity)
+            .containsExactly(25, 24, 23, 22, 21, 20, 19, 18, 17, 16, 15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1);
+    }
+
+    @Test
+    void testStreamMatchesThePages() {
+        List<TransactionRow> streamed;
+        try (Stream<TransactionRow> rows = transactionRepository.streamByPortfolioId(portfolio.getId())) {
+            streamed = rows.toList();
+        }
+        assertThat(streamed).containsExactlyElementsOf(transactionRepository.findPage(portfolio.getId(), Limit.of(100)));
+        assertThat(streamed.get(0).timestamp()).isEqualTo(START.plusSeconds(8));
+    }
+
+    @Test
+    void testCursorRoundTripsAndRejectsGarbage() {
+        TransactionPage.Cursor cursor = new TransactionPage.Cursor(START.plusNanos(123_000), 42);
+        assertThat(TransactionPage.Cursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThatThrownBy(() -> TransactionPage.Cursor.decode("not-a-cursor"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
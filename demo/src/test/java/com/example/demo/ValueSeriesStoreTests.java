@@ -0,0 +1,125 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.demo.service.ValueSeriesStore;
+import com.example.demo.service.ValueSeriesStore.Point;
+
+public class ValueSeriesStoreTests {
+    private static final Instant START = Instant.parse("2026-03-02T00:00:00Z");
+
+    @TempDir Path dir;
+
+    @Test
+    void testPointsRoundTripExactly() throws Exception {
+        try (ValueSeriesStore store = new ValueSeriesStore(dir, 4096)) {
+            store.append(1L, START, new BigDecimal("10000.00"));
+            store.append(1L, START.plusSeconds(60), new BigDecimal("10012.3456"));
+            store.append(1L, START.plusSeconds(120), new BigDecimal("9800.10"));
+            store.append(1L, START.plusSeconds(121), new BigDecimal("9800.10"));
+            store.append(1L, START.plusSeconds(90), new BigDecimal("123456789.01"));   // arrives late
+            store.append(1L, START.plus(Duration.ofDays(40)), new BigDecimal("0"));
+
+            List<Point> points = store.range(1L, START, START.plus(Duration.ofDays(41)));
+            assertThat(points).extracting(Point::timestamp).containsExactly(
+                START, START.plusSeconds(60), START.plusSeconds(90), START.plusSeconds(120),
+                START.plusSeconds(121), START.plus(Duration.ofDays(40)));
+            assertThat(points).extracting(Point::value).usingElementComparator(BigDecimal::compareTo).containsExactly(
+                new BigDecimal("10000.00"), new BigDecimal("10012.3456"), new BigDecimal("123456789.01"),
+                new BigDecimal("9800.10"), new BigDecimal("9800.10"), BigDecimal.ZERO);
+            assertThat(store.range(2L, START, START.plusSeconds(60))).isEmpty();
+        }
+    }
+
+    @Test
+    void testReopenContinuesTheSeries() throws Exception {
+        try (ValueSeriesStore store = new ValueSeriesStore(dir, 1024)) {
+            for (int i = 0; i < 500; i++) {
+                store.append(7L, START.plusSeconds(i * 60L), BigDecimal.valueOf(1_000 + i % 13));
+            }
+        }
+        try (ValueSeriesStore store = new ValueSeriesStore(dir, 1024)) {
+            for (int i = 500; i < 1_000; i++) {
+                store.append(7L, START.plusSeconds(i * 60L), BigDecimal.valueOf(1_000 + i % 13));
+            }
+            List<Point> points = store.range(7L, START, START.plus(Duration.ofDays(1)));
+            assertThat(points).hasSize(1_000);
+            for (int i = 0; i < 1_000; i++) {
+                assertThat(points.get(i).timestamp()).isEqualTo(START.plusSeconds(i * 60L));
+                assertThat(points.get(i).value()).isEqualByComparingTo(BigDecimal.valueOf(1_000 + i % 13));
+            }
+        }
+    }
+
+    @Test
+    void testOpenFilesAreBoundedAndEvictedSeriesResume() throws Exception {
+        try (ValueSeriesStore store = new ValueSeriesStore(dir, 1024, 4)) {
+            // round-robin over more portfolios than may stay open, so every append after the first pass reopens
+            for (int i = 0; i < 300; i++) {
+                for (long portfolio = 1; portfolio <= 10; portfolio++) {
+                    store.append(portfolio, START.plusSeconds(i * 60L), BigDecimal.valueOf(portfolio * 1_000 + i));
+                }
+                assertThat(store.openSeries()).isLessThanOrEqualTo(4);
+            }
+            for (long portfolio = 1; portfolio <= 10; portfolio++) {
+                List<Point> points = store.range(portfolio, START, START.plus(Duration.ofDays(1)));
+                assertThat(points).hasSize(300);
+                assertThat(points.get(299).value()).isEqualByComparingTo(BigDecimal.valueOf(portfolio * 1_000 + 299));
+            }
+        }
+    }
+
+    @Test
+    void testRangeAndDownsampleAcrossChunks() throws Exception {
+        try (ValueSeriesStore store = new ValueSeriesStore(dir, 1024)) {
+            for (int minute = 0; minute < 7 * 24 * 60; minute++) {
+                store.append(3L, START.plus(Duration.ofMinutes(minute)), BigDecimal.valueOf(minute, 2));
+            }
+
+            Instant from = START.plus(Duration.ofDays(3)).plusSeconds(30);
+            List<Point> hour = store.range(3L, from, from.plus(Duration.ofHours(1)));
+            assertThat(hour).hasSize(60);
+            assertThat(hour.get(0).timestamp()).isEqualTo(START.plus(Duration.ofDays(3)).plusSeconds(60));
+            assertThat(hour.get(0).value()).isEqualByComparingTo(BigDecimal.valueOf(3 * 24 * 60 + 1, 2));
+
+            List<Point> days = store.downsample(3L, START, START.plus(Duration.ofDays(10)), Duration.ofDays(1));
+            assertThat(days).hasSize(7);
+            assertThat(days.get(6).timestamp()).isEqualTo(START.plus(Duration.ofDays(6)));
+            assertThat(days.get(6).value()).isEqualByComparingTo(BigDecimal.valueOf(7 * 24 * 60 - 1, 2));
+        }
+    }
+
+    @Test
+    void testSteadySnapshotsTakeAFewBytesEach() throws Exception {
+        try (ValueSeriesStore store = new ValueSeriesStore(dir, 16 << 10)) {
+            int points = 100_000;
+            long cents = 1_000_000;
+            for (int i = 0; i < points; i++) {
+                cents += (i % 7) - 3;
+                store.append(5L, START.plusSeconds(i * 60L), BigDecimal.valueOf(cents, 2));
+            }
+            // a portfolio_value_history row is an id, a portfolio id, a timestamp and a decimal, plus row overhead
+            assertThat(store.sizeBytes(5L)).isLessThan(points * 3L);
+            assertThat(store.range(5L, START, START.plus(Duration.ofDays(100)))).hasSize(points);
+        }
+    }
+
+    @Test
+    void testDisabledStoreDropsPoints() throws Exception {
+        try (ValueSeriesStore store = new ValueSeriesStore((Path) null, 1024)) {
+            store.append(1L, START, BigDecimal.ONE);
+            assertThat(store.isEnabled()).isFalse();
+            assertThat(store.range(1L, START, START.plusSeconds(1))).isEmpty();
+            assertThat(store.sizeBytes(1L)).isZero();
+        }
+    }
+}